@@ -0,0 +1,79 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.ValueMap;
+import com.segment.analytics.integrations.ScreenPayload;
+import com.segment.analytics.integrations.TrackPayload;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures the translation of screen and custom track events into Adobe actions and states. */
+@State(Scope.Benchmark)
+public class AdobeIntegrationBenchmark {
+
+  @Param({"10", "50", "200"})
+  int propertyCount;
+
+  @Param({"0", "3"})
+  int nestingDepth;
+
+  @Param({"0", "10", "60"})
+  int mappingCount;
+
+  private AdobeIntegration integration;
+  private NoOpAdobeAnalyticsClient client;
+  private TrackPayload mappedTrack;
+  private TrackPayload unmappedTrack;
+  private ScreenPayload screen;
+
+  @Setup
+  public void setUp() {
+    ValueMap settings = Workloads.settings(mappingCount, nestingDepth);
+    client = new NoOpAdobeAnalyticsClient();
+    integration =
+        new AdobeIntegration(
+            settings, Workloads.application(), null, null, client, Workloads.logger());
+
+    mappedTrack =
+        new TrackPayload.Builder()
+            .anonymousId("anonymous")
+            .event(Workloads.MAPPED_EVENT)
+            .context(Workloads.context())
+            .properties(Workloads.properties(propertyCount, nestingDepth))
+            .build();
+    unmappedTrack =
+        new TrackPayload.Builder()
+            .anonymousId("anonymous")
+            .event(Workloads.UNMAPPED_EVENT)
+            .context(Workloads.context())
+            .properties(Workloads.properties(propertyCount, nestingDepth))
+            .build();
+    screen =
+        new ScreenPayload.Builder()
+            .anonymousId("anonymous")
+            .name("Article")
+            .context(Workloads.context())
+            .properties(Workloads.properties(propertyCount, nestingDepth))
+            .build();
+  }
+
+  @Benchmark
+  public Object trackMapped() {
+    integration.track(mappedTrack);
+    return client.last;
+  }
+
+  @Benchmark
+  public void trackUnmapped() {
+    integration.track(unmappedTrack);
+  }
+
+  @Benchmark
+  public Object screen() {
+    integration.screen(screen);
+    return client.last;
+  }
+}
@@ -0,0 +1,71 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the latency seen by Segment's integration thread when tracking a hit, with the Adobe SDK
+ * called directly or through the dispatching client. The SDK is simulated by a client that burns
+ * CPU for every hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DispatchingAdobeAnalyticsClientBenchmark {
+
+  @Param({"direct", "dispatching"})
+  String mode;
+
+  @Param({"1000", "100000"})
+  long sdkCost;
+
+  private final Map<String, Object> contextData =
+      Collections.<String, Object>singletonMap("myapp.testing", "testing value");
+  private AdobeAnalyticsClient client;
+
+  @Setup
+  public void setUp() {
+    AdobeAnalyticsClient sdk =
+        new NoOpAdobeAnalyticsClient() {
+          @Override
+          public void trackAction(String action, Map<String, Object> contextData) {
+            Blackhole.consumeCPU(sdkCost);
+          }
+        };
+
+    if ("direct".equals(mode)) {
+      client = sdk;
+    } else {
+      client =
+          new DispatchingAdobeAnalyticsClient(
+              sdk,
+              DispatchingAdobeAnalyticsClient.DEFAULT_QUEUE_SIZE,
+              AdobeIntegration.OverflowPolicy.DROP_NEWEST,
+              Workloads.logger());
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (client instanceof DispatchingAdobeAnalyticsClient) {
+      ((DispatchingAdobeAnalyticsClient) client).shutdown();
+    }
+  }
+
+  @Benchmark
+  public void trackAction() {
+    client.trackAction("Article Read", contextData);
+  }
+}
@@ -0,0 +1,77 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.Properties;
+import com.segment.analytics.integrations.TrackPayload;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures the translation of ecommerce events, including the <code>&&products</code> string. */
+@State(Scope.Benchmark)
+public class EcommerceAnalyticsBenchmark {
+
+  @Param({"1", "10", "100", "1000"})
+  int cartSize;
+
+  @Param({"10", "50"})
+  int propertyCount;
+
+  @Param({"0", "10"})
+  int mappingCount;
+
+  private EcommerceAnalytics ecommerce;
+  private NoOpAdobeAnalyticsClient client;
+  private TrackPayload orderCompleted;
+  private TrackPayload productAdded;
+
+  @Setup
+  public void setUp() {
+    ContextDataConfiguration contextDataConfiguration =
+        new ContextDataConfiguration(Workloads.settings(mappingCount, 0));
+    client = new NoOpAdobeAnalyticsClient();
+    ecommerce =
+        new EcommerceAnalytics(client, "name", contextDataConfiguration, Workloads.logger());
+
+    Properties order =
+        Workloads.properties(propertyCount, 0)
+            .putOrderId("order")
+            .putProducts(Workloads.products(cartSize));
+    orderCompleted =
+        new TrackPayload.Builder()
+            .anonymousId("anonymous")
+            .event(EcommerceAnalytics.Event.OrderCompleted.getSegmentEvent())
+            .context(Workloads.context())
+            .properties(order)
+            .build();
+
+    Properties product =
+        Workloads.properties(propertyCount, 0)
+            .putName("product")
+            .putSku("sku")
+            .putCategory("category")
+            .putPrice(9.99)
+            .putValue("quantity", 2);
+    productAdded =
+        new TrackPayload.Builder()
+            .anonymousId("anonymous")
+            .event(EcommerceAnalytics.Event.ProductAdded.getSegmentEvent())
+            .context(Workloads.context())
+            .properties(product)
+            .build();
+  }
+
+  @Benchmark
+  public Object orderCompleted() {
+    ecommerce.track(orderCompleted);
+    return client.last;
+  }
+
+  @Benchmark
+  public Object productAdded() {
+    ecommerce.track(productAdded);
+    return client.last;
+  }
+}
@@ -0,0 +1,76 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.ValueMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the routing table with the events mapping previously kept as a hash map. Run with <code>
+ * -prof gc</code>: the allocations of the <code>build</code> benchmarks approximate the heap
+ * retained by each structure.
+ */
+@State(Scope.Benchmark)
+public class EventRoutesBenchmark {
+
+  @Param({"10", "1000", "5000"})
+  int mappingCount;
+
+  private ValueMap settings;
+  private Map<String, String> hashMap;
+  private EventRoutes routes;
+  private String[] events;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    settings = new ValueMap();
+    for (int i = 0; i < mappingCount; i++) {
+      settings.put("Segment Event " + i, "adobe.event" + i);
+    }
+    hashMap = settings.toStringMap();
+    routes = new EventRoutes(settings);
+
+    // Half of the lookups miss.
+    events = new String[1024];
+    for (int i = 0; i < events.length; i++) {
+      events[i] = "Segment Event " + (i % (mappingCount * 2));
+    }
+  }
+
+  @Benchmark
+  public Object buildHashMap() {
+    Map<String, String> eventsMapping = settings.toStringMap();
+    Map<String, Object> routes = new HashMap<>();
+    for (Map.Entry<String, String> entry : eventsMapping.entrySet()) {
+      routes.put(entry.getKey(), entry.getValue());
+    }
+    return routes;
+  }
+
+  @Benchmark
+  public Object buildEventRoutes() {
+    return new EventRoutes(settings);
+  }
+
+  @Benchmark
+  public Object lookupHashMap() {
+    return hashMap.get(nextEvent());
+  }
+
+  @Benchmark
+  public Object lookupEventRoutes() {
+    return routes.get(nextEvent());
+  }
+
+  private String nextEvent() {
+    next = (next + 1) & (events.length - 1);
+    // A copy, so lookups hash the name like events coming from the app do.
+    return new String(events[next]);
+  }
+}
@@ -0,0 +1,43 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.content.Context;
+
+import java.util.Map;
+
+/**
+ * Adobe Analytics client that does not call into the Adobe SDK. The last context data is kept so
+ * the translation work can not be optimized away.
+ */
+class NoOpAdobeAnalyticsClient implements AdobeAnalyticsClient {
+
+  Object last;
+
+  @Override
+  public void trackAction(String action, Map<String, Object> contextData) {
+    last = contextData;
+  }
+
+  @Override
+  public void trackState(String state, Map<String, Object> contextData) {
+    last = contextData;
+  }
+
+  @Override
+  public void setContext(Context context) {}
+
+  @Override
+  public void pauseCollectingLifecycleData() {}
+
+  @Override
+  public void collectLifecycleData(Activity activity) {}
+
+  @Override
+  public void setUserIdentifier(String identifier) {}
+
+  @Override
+  public void setDebugLogging(Boolean debugLogging) {}
+
+  @Override
+  public void flushQueue() {}
+}
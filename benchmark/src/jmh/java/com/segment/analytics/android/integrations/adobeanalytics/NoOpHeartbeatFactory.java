@@ -0,0 +1,56 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.adobe.primetime.va.simple.MediaHeartbeat;
+import com.adobe.primetime.va.simple.MediaHeartbeatConfig;
+import com.adobe.primetime.va.simple.MediaObject;
+
+import java.util.Map;
+
+/**
+ * Creates media heartbeats that do not track anything. The last media object and context data are
+ * kept so the translation work can not be optimized away.
+ */
+class NoOpHeartbeatFactory extends VideoAnalytics.HeartbeatFactory {
+
+  @Override
+  MediaHeartbeat get(MediaHeartbeat.MediaHeartbeatDelegate delegate, MediaHeartbeatConfig config) {
+    return new NoOpHeartbeat(delegate, config);
+  }
+
+  static class NoOpHeartbeat extends MediaHeartbeat {
+
+    Object lastMediaObject;
+    Object lastContextData;
+
+    NoOpHeartbeat(MediaHeartbeatDelegate delegate, MediaHeartbeatConfig config) {
+      super(delegate, config);
+    }
+
+    @Override
+    public void trackSessionStart(MediaObject mediaInfo, Map<String, String> contextData) {
+      lastMediaObject = mediaInfo;
+      lastContextData = contextData;
+    }
+
+    @Override
+    public void trackPlay() {}
+
+    @Override
+    public void trackPause() {}
+
+    @Override
+    public void trackComplete() {}
+
+    @Override
+    public void trackSessionEnd() {}
+
+    @Override
+    public void trackError(String errorId) {}
+
+    @Override
+    public void trackEvent(Event event, MediaObject mediaObject, Map<String, String> contextData) {
+      lastMediaObject = mediaObject;
+      lastContextData = contextData;
+    }
+  }
+}
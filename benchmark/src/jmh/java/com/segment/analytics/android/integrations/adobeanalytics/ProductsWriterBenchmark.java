@@ -0,0 +1,37 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures the serialization of the <code>&&products</code> variable alone. */
+@State(Scope.Benchmark)
+public class ProductsWriterBenchmark {
+
+  @Param({"1", "10", "100", "1000"})
+  int cartSize;
+
+  private ProductsWriter writer;
+  private List<? extends Map<String, Object>> products;
+
+  @Setup
+  public void setUp() {
+    writer = new ProductsWriter("name");
+    products = Arrays.asList(Workloads.products(cartSize));
+  }
+
+  @Benchmark
+  public String write() {
+    StringBuilder buffer = ProductsWriter.newBuffer(products.size());
+    for (Map<String, Object> product : products) {
+      writer.append(buffer, product);
+    }
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,163 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.Properties;
+import com.segment.analytics.ValueMap;
+import com.segment.analytics.integrations.TrackPayload;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the translation of video events into heartbeat calls. Each invocation tracks every event
+ * of the selected mix, in order.
+ */
+@State(Scope.Benchmark)
+public class VideoAnalyticsBenchmark {
+
+  /**
+   * Event mixes:
+   *
+   * <ul>
+   *   <li><code>session</code>: a complete session, from playback started to playback completed.
+   *   <li><code>playback</code>: pause, resume, buffer and seek events of an ongoing session.
+   *   <li><code>ads</code>: an ad break with a single ad.
+   *   <li><code>quality</code>: quality of service updates.
+   *   <li><code>abr</code>: quality of service updates of an adaptive bitrate switch, followed by
+   *       Adobe polling the quality of service object.
+   * </ul>
+   */
+  @Param({"session", "playback", "ads", "quality", "abr"})
+  String eventMix;
+
+  @Param({"10", "50"})
+  int propertyCount;
+
+  @Param({"0", "10"})
+  int mappingCount;
+
+  private VideoAnalytics video;
+  private TrackPayload[] events;
+
+  @Setup
+  public void setUp() {
+    ValueMap settings = Workloads.settings(mappingCount, 0);
+    video =
+        new VideoAnalytics(
+            Workloads.application(),
+            settings.getString("heartbeatTrackingServerUrl"),
+            new ContextDataConfiguration(settings),
+            false,
+            new NoOpHeartbeatFactory(),
+            Workloads.logger());
+
+    // Events other than playback started need an ongoing session.
+    video.track(event(VideoAnalytics.Event.PlaybackStarted, content()));
+
+    switch (eventMix) {
+      case "session":
+        events =
+            new TrackPayload[] {
+              event(VideoAnalytics.Event.PlaybackStarted, content()),
+              event(VideoAnalytics.Event.ContentStarted, content().putValue("position", 0)),
+              event(VideoAnalytics.Event.PlaybackPaused, null),
+              event(VideoAnalytics.Event.PlaybackResumed, null),
+              event(VideoAnalytics.Event.ContentCompleted, null),
+              event(VideoAnalytics.Event.PlaybackCompleted, null)
+            };
+        break;
+      case "playback":
+        events =
+            new TrackPayload[] {
+              event(VideoAnalytics.Event.PlaybackPaused, null),
+              event(VideoAnalytics.Event.PlaybackResumed, null),
+              event(VideoAnalytics.Event.PlaybackBufferStarted, null),
+              event(VideoAnalytics.Event.PlaybackBufferCompleted, null),
+              event(VideoAnalytics.Event.PlaybackSeekStarted, null),
+              event(
+                  VideoAnalytics.Event.PlaybackSeekCompleted,
+                  new Properties().putValue("seek_position", 30))
+            };
+        break;
+      case "ads":
+        events =
+            new TrackPayload[] {
+              event(VideoAnalytics.Event.AdBreakStarted, ad()),
+              event(VideoAnalytics.Event.AdStarted, ad()),
+              event(VideoAnalytics.Event.AdCompleted, null),
+              event(VideoAnalytics.Event.AdBreakCompleted, null)
+            };
+        break;
+      case "quality":
+        events =
+            new TrackPayload[] {
+              event(
+                  VideoAnalytics.Event.QualityUpdated,
+                  new Properties()
+                      .putValue("bitrate", 12000)
+                      .putValue("startup_time", 1)
+                      .putValue("fps", 50)
+                      .putValue("dropped_frames", 1))
+            };
+        break;
+      case "abr":
+        events = new TrackPayload[8];
+        for (int i = 0; i < events.length; i++) {
+          events[i] =
+              event(
+                  VideoAnalytics.Event.QualityUpdated,
+                  new Properties()
+                      .putValue("bitrate", 1000 * (i + 1))
+                      .putValue("fps", 50)
+                      .putValue("dropped_frames", i));
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown event mix " + eventMix);
+    }
+  }
+
+  private Properties content() {
+    return Workloads.properties(propertyCount, 0)
+        .putValue("title", "You Win or You Die")
+        .putValue("content_asset_id", "123")
+        .putValue("total_length", 100D)
+        .putValue("program", "Game of Thrones")
+        .putValue("season", "1")
+        .putValue("episode", "7")
+        .putValue("genre", "fantasy")
+        .putValue("channel", "HBO")
+        .putValue("livestream", false);
+  }
+
+  private Properties ad() {
+    return Workloads.properties(propertyCount, 0)
+        .putValue("title", "Car Commercial")
+        .putValue("asset_id", "123")
+        .putValue("total_length", 10D)
+        .putValue("index_position", 1L)
+        .putValue("publisher", "Lexus");
+  }
+
+  private static TrackPayload event(VideoAnalytics.Event event, Properties properties) {
+    if (properties == null) {
+      properties = new Properties();
+    }
+    return new TrackPayload.Builder()
+        .anonymousId("anonymous")
+        .event(event.getName())
+        .context(Workloads.context())
+        .properties(properties.putValue("session_id", "session"))
+        .build();
+  }
+
+  @Benchmark
+  public Object track() {
+    for (TrackPayload event : events) {
+      video.track(event);
+    }
+    return video.getPlayback().getQoSObject();
+  }
+}
@@ -0,0 +1,74 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.Properties;
+import com.segment.analytics.ValueMap;
+import com.segment.analytics.integrations.TrackPayload;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures a burst of seek and buffer events, as sent while the user scrubs through a video on an
+ * unstable network, with and without coalescing them. Each invocation tracks ten seeks, each
+ * followed by a short buffering, and resumes playback, which reports the held events.
+ */
+@State(Scope.Benchmark)
+public class VideoScrubbingBenchmark {
+
+  /** Coalescing window in milliseconds, <code>0</code> reports every event. */
+  @Param({"0", "250"})
+  long coalescingWindow;
+
+  private VideoAnalytics video;
+  private TrackPayload[] events;
+
+  @Setup
+  public void setUp() {
+    ValueMap settings = Workloads.settings(0, 0);
+    video =
+        new VideoAnalytics(
+            Workloads.application(),
+            settings.getString("heartbeatTrackingServerUrl"),
+            new ContextDataConfiguration(settings),
+            false,
+            new NoOpHeartbeatFactory(),
+            Workloads.logger());
+    video.setCoalescingWindow(coalescingWindow);
+    video.track(event(VideoAnalytics.Event.PlaybackStarted, new Properties()));
+
+    List<TrackPayload> burst = new ArrayList<>();
+    for (int i = 1; i <= 10; i++) {
+      burst.add(event(VideoAnalytics.Event.PlaybackSeekStarted, new Properties()));
+      burst.add(
+          event(
+              VideoAnalytics.Event.PlaybackSeekCompleted,
+              new Properties().putValue("seek_position", i * 10)));
+      burst.add(event(VideoAnalytics.Event.PlaybackBufferStarted, new Properties()));
+      burst.add(event(VideoAnalytics.Event.PlaybackBufferCompleted, new Properties()));
+    }
+    burst.add(event(VideoAnalytics.Event.PlaybackResumed, new Properties()));
+    events = burst.toArray(new TrackPayload[0]);
+  }
+
+  private static TrackPayload event(VideoAnalytics.Event event, Properties properties) {
+    return new TrackPayload.Builder()
+        .anonymousId("anonymous")
+        .event(event.getName())
+        .context(Workloads.context())
+        .properties(properties.putValue("session_id", "session"))
+        .build();
+  }
+
+  @Benchmark
+  public void track() {
+    for (TrackPayload event : events) {
+      video.track(event);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.Properties;
+import com.segment.analytics.ValueMap;
+import com.segment.analytics.integrations.TrackPayload;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of starting a video session, with and without reusing the heartbeats of
+ * ended sessions and their configurations. Each invocation starts a session and completes it right
+ * away, so the next one can reuse its heartbeat.
+ *
+ * <p>Without either, every session builds its configuration and its heartbeat, as before they were
+ * reused. With cached configurations only, every session builds its heartbeat from a shared
+ * configuration. With pooled heartbeats, sessions reuse the heartbeat of the previous one, and only
+ * build a configuration when none is idle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VideoSessionStartBenchmark {
+
+  /** Whether the heartbeats of ended sessions are reused, otherwise every session builds one. */
+  @Param({"true", "false"})
+  boolean pooled;
+
+  /** Whether configurations are cached, otherwise every new heartbeat builds its own. */
+  @Param({"true", "false"})
+  boolean cachedConfigs;
+
+  private VideoAnalytics video;
+  private TrackPayload started;
+  private TrackPayload completed;
+
+  @Setup
+  public void setUp() {
+    ValueMap settings = Workloads.settings(0, 0);
+    video =
+        new VideoAnalytics(
+            Workloads.application(),
+            settings.getString("heartbeatTrackingServerUrl"),
+            new ContextDataConfiguration(settings),
+            false,
+            new NoOpHeartbeatFactory(),
+            Workloads.logger());
+    video.setHeartbeatPoolSize(
+        pooled ? HeartbeatPool.DEFAULT_MAX_SIZE : 0, cachedConfigs ? HeartbeatPool.MAX_CONFIGS : 0);
+
+    started =
+        event(
+            VideoAnalytics.Event.PlaybackStarted,
+            Workloads.properties(10, 0)
+                .putValue("title", "You Win or You Die")
+                .putValue("content_asset_id", "123")
+                .putValue("total_length", 100D)
+                .putValue("channel", "HBO")
+                .putValue("video_player", "ExoPlayer")
+                .putValue("livestream", false));
+    completed = event(VideoAnalytics.Event.PlaybackCompleted, new Properties());
+  }
+
+  private static TrackPayload event(VideoAnalytics.Event event, Properties properties) {
+    return new TrackPayload.Builder()
+        .anonymousId("anonymous")
+        .event(event.getName())
+        .context(Workloads.context())
+        .properties(properties.putValue("session_id", "session"))
+        .build();
+  }
+
+  @Benchmark
+  public void startSession() {
+    video.track(started);
+    video.track(completed);
+  }
+}
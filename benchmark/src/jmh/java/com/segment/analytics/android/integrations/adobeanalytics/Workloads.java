@@ -0,0 +1,108 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.content.Context;
+
+import com.segment.analytics.Analytics;
+import com.segment.analytics.Properties;
+import com.segment.analytics.ValueMap;
+import com.segment.analytics.integrations.Logger;
+
+import org.mockito.Mockito;
+
+/** Builds the settings and event properties used by the benchmarks. */
+final class Workloads {
+
+  static final String MAPPED_EVENT = "Article Read";
+  static final String UNMAPPED_EVENT = "Article Shared";
+
+  private Workloads() {}
+
+  /**
+   * Creates integration settings.
+   *
+   * @param mappingCount Number of top level properties mapped to Adobe variables through <code>
+   *     contextValues</code>.
+   * @param nestingDepth Depth of the nested properties. One mapping is added per level.
+   * @return Settings.
+   */
+  static ValueMap settings(int mappingCount, int nestingDepth) {
+    ValueMap contextValues = new ValueMap();
+    for (int i = 0; i < mappingCount; i++) {
+      contextValues.putValue("property" + i, "myapp.property" + i);
+    }
+
+    StringBuilder path = new StringBuilder("nested");
+    for (int i = 0; i < nestingDepth; i++) {
+      contextValues.putValue(path + ".value", "myapp.nested" + i);
+      path.append(".child");
+    }
+    contextValues.putValue(".context.library", "myapp.library");
+
+    return new ValueMap()
+        .putValue("heartbeatTrackingServerUrl", "https://heartbeat.example.com/")
+        .putValue("productIdentifier", "name")
+        .putValue("customDataPrefix", "myapp.")
+        .putValue("eventsV2", new ValueMap().putValue(MAPPED_EVENT, "articleRead"))
+        .putValue("contextValues", contextValues);
+  }
+
+  /**
+   * Creates event properties.
+   *
+   * @param propertyCount Number of top level properties.
+   * @param nestingDepth Depth of the <code>nested</code> property, or zero to omit it.
+   * @return Properties.
+   */
+  static Properties properties(int propertyCount, int nestingDepth) {
+    Properties properties = new Properties();
+    for (int i = 0; i < propertyCount; i++) {
+      if (i % 2 == 0) {
+        properties.putValue("property" + i, "value " + i);
+      } else {
+        properties.putValue("property" + i, i);
+      }
+    }
+
+    if (nestingDepth > 0) {
+      properties.putValue("nested", nested(nestingDepth));
+    }
+    return properties;
+  }
+
+  private static ValueMap nested(int depth) {
+    ValueMap nested = new ValueMap().putValue("value", "depth " + depth);
+    if (depth > 1) {
+      nested.putValue("child", nested(depth - 1));
+    }
+    return nested;
+  }
+
+  /**
+   * Creates the cart of an ecommerce event.
+   *
+   * @param cartSize Number of products.
+   * @return Products.
+   */
+  static Properties.Product[] products(int cartSize) {
+    Properties.Product[] products = new Properties.Product[cartSize];
+    for (int i = 0; i < cartSize; i++) {
+      products[i] = new Properties.Product("id" + i, "sku" + i, 9.99 + i);
+      products[i].putName("product " + i);
+      products[i].putValue("category", "category " + (i % 5));
+      products[i].putValue("quantity", 1 + (i % 3));
+    }
+    return products;
+  }
+
+  static ValueMap context() {
+    return new ValueMap().putValue("library", "analytics-android");
+  }
+
+  static Context application() {
+    return Mockito.mock(Context.class, Mockito.withSettings().stubOnly());
+  }
+
+  static Logger logger() {
+    return Logger.with(Analytics.LogLevel.NONE);
+  }
+}
@@ -0,0 +1,171 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.ValueMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the settings that define how events are translated: the events mapping, the
+ * context data variables and the product identifier. Everything is compiled when the snapshot is
+ * created, so events only read from it.
+ *
+ * <p>Each event reads the current snapshot once and uses it until it is sent to Adobe. Settings are
+ * changed by replacing the snapshot as a whole, see {@link
+ * AdobeIntegration#updateSettings(ValueMap)}, which never affects events already in flight nor the
+ * state of the integration, such as video sessions.
+ */
+final class AdobeConfiguration {
+
+  private final EventRoutes eventRoutes;
+  private final ContextDataConfiguration contextDataConfiguration;
+  private final TranslationPlanCache translationPlans;
+  private final String productIdentifier;
+  private final Set<String> productReservedKeys;
+  private final ProductsWriter productsWriter;
+
+  /**
+   * Compiles the settings.
+   *
+   * @param settings Integration settings.
+   */
+  AdobeConfiguration(ValueMap settings) {
+    this(
+        settings.getValueMap("eventsV2"),
+        new ContextDataConfiguration(settings),
+        settings.getString("productIdentifier"));
+  }
+
+  /**
+   * Compiles the settings.
+   *
+   * @param eventsMapping Events mapping as <code>{segment event, adobe analytics event}</code>, may
+   *     be <code>null</code>.
+   * @param contextDataConfiguration Context data configuration.
+   * @param productIdentifier Field that represents the product id, may be <code>null</code>.
+   */
+  AdobeConfiguration(
+      Map<String, ?> eventsMapping,
+      ContextDataConfiguration contextDataConfiguration,
+      String productIdentifier) {
+    this(
+        new EventRoutes(eventsMapping),
+        contextDataConfiguration,
+        createTranslationPlans(contextDataConfiguration),
+        productIdentifier);
+  }
+
+  private AdobeConfiguration(
+      EventRoutes eventRoutes,
+      ContextDataConfiguration contextDataConfiguration,
+      TranslationPlanCache translationPlans,
+      String productIdentifier) {
+    this.eventRoutes = eventRoutes;
+    this.contextDataConfiguration = contextDataConfiguration;
+    this.translationPlans = translationPlans;
+    this.productIdentifier = productIdentifier;
+    this.productReservedKeys = getProductReservedKeys(productIdentifier);
+    this.productsWriter = new ProductsWriter(productIdentifier);
+  }
+
+  /**
+   * Creates a copy of this snapshot with a different events mapping.
+   *
+   * @param eventsMapping Events mapping as <code>{segment event, adobe analytics event}</code>.
+   * @return New snapshot.
+   */
+  AdobeConfiguration withEventsMapping(Map<String, ?> eventsMapping) {
+    return new AdobeConfiguration(
+        new EventRoutes(eventsMapping),
+        contextDataConfiguration,
+        translationPlans,
+        productIdentifier);
+  }
+
+  /**
+   * Creates a copy of this snapshot with a different context data configuration.
+   *
+   * @param contextDataConfiguration Context data configuration.
+   * @return New snapshot.
+   */
+  AdobeConfiguration withContextDataConfiguration(
+      ContextDataConfiguration contextDataConfiguration) {
+    return new AdobeConfiguration(
+        eventRoutes,
+        contextDataConfiguration,
+        createTranslationPlans(contextDataConfiguration),
+        productIdentifier);
+  }
+
+  /**
+   * Creates a copy of this snapshot with a different product identifier.
+   *
+   * @param productIdentifier Field that represents the product id.
+   * @return New snapshot.
+   */
+  AdobeConfiguration withProductIdentifier(String productIdentifier) {
+    return new AdobeConfiguration(
+        eventRoutes, contextDataConfiguration, translationPlans, productIdentifier);
+  }
+
+  EventRoutes getEventRoutes() {
+    return eventRoutes;
+  }
+
+  ContextDataConfiguration getContextDataConfiguration() {
+    return contextDataConfiguration;
+  }
+
+  /**
+   * @return Translation plans of screens and custom track events, which share the same reserved
+   *     keys.
+   */
+  TranslationPlanCache getTranslationPlans() {
+    return translationPlans;
+  }
+
+  String getProductIdentifier() {
+    return productIdentifier;
+  }
+
+  /**
+   * Retrieves the properties used to build a product when the event describes a single product
+   * instead of a list of products. These are not sent as extra properties.
+   *
+   * @return Set of property keys.
+   */
+  Set<String> getProductReservedKeys() {
+    return productReservedKeys;
+  }
+
+  ProductsWriter getProductsWriter() {
+    return productsWriter;
+  }
+
+  private static TranslationPlanCache createTranslationPlans(
+      ContextDataConfiguration configuration) {
+    // Products are removed just in case
+    return new TranslationPlanCache(
+        configuration,
+        ContextDataBuilder.DEFAULT_RESERVED_KEYS,
+        TranslationPlanCache.DEFAULT_MAX_SIZE);
+  }
+
+  private static Set<String> getProductReservedKeys(String productIdentifier) {
+    Set<String> reservedKeys = new HashSet<>(Arrays.asList("orderId", "order_id"));
+    reservedKeys.add("category");
+    reservedKeys.add("quantity");
+    reservedKeys.add("price");
+
+    if (productIdentifier == null || productIdentifier.equals("id")) {
+      reservedKeys.add("productId");
+      reservedKeys.add("product_id");
+    } else {
+      reservedKeys.add(productIdentifier);
+    }
+
+    return Collections.unmodifiableSet(reservedKeys);
+  }
+}
@@ -14,8 +14,12 @@ import com.segment.analytics.integrations.Logger;
 import com.segment.analytics.integrations.ScreenPayload;
 import com.segment.analytics.integrations.TrackPayload;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.segment.analytics.internal.Utils.isNullOrEmpty;
 
@@ -31,12 +35,169 @@ import static com.segment.analytics.internal.Utils.isNullOrEmpty;
  */
 public class AdobeIntegration extends Integration<Void> {
 
-  public static final Factory FACTORY =
-      new Factory() {
+  /** Factory of the integration with the default options. */
+  public static final Factory FACTORY = builder().build();
+
+  private static final String ADOBE_KEY = "Adobe Analytics";
+
+  /**
+   * Creates a builder of the integration factory, to set options that are chosen by the app rather
+   * than in the integration settings on Segment:
+   *
+   * <pre>
+   * analytics = new Analytics.Builder(this, "write_key")
+   *                 .use(AdobeIntegration.builder().asyncDispatch().build())
+   *                 .build();
+   * </pre>
+   *
+   * @return Builder with the default options.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Defines what happens to a tracking hit when the queue of the asynchronous dispatcher is full.
+   */
+  public enum OverflowPolicy {
+    /** The caller waits until there is room in the queue. */
+    BLOCK,
+    /** The new hit is discarded. */
+    DROP_NEWEST,
+    /** The oldest queued hit is discarded to make room for the new one. */
+    DROP_OLDEST
+  }
+
+  /** Builds the integration factory with options set by the app. */
+  public static final class Builder {
+
+    private boolean asyncDispatch;
+    private int asyncDispatchQueueSize = DispatchingAdobeAnalyticsClient.DEFAULT_QUEUE_SIZE;
+    private OverflowPolicy asyncDispatchOverflowPolicy =
+        DispatchingAdobeAnalyticsClient.DEFAULT_OVERFLOW_POLICY;
+    private boolean asyncLifecycle;
+    private boolean deferredInitialization;
+    private int deferredInitializationBufferSize = DeferredAdobeAnalyticsClient.DEFAULT_BUFFER_SIZE;
+    private long videoSessionTimeoutMillis = VideoAnalytics.DEFAULT_SESSION_TIMEOUT_MILLIS;
+    private boolean suspendVideoInBackground = true;
+    private long videoBackgroundTimeoutMillis = VideoAnalytics.DEFAULT_BACKGROUND_TIMEOUT_MILLIS;
+    private long videoCoalescingWindowMillis;
+
+    Builder() {}
+
+    /**
+     * Moves the calls to the Adobe SDK off Segment's integration thread, to a dedicated thread with
+     * a queue of 1000 calls that discards the oldest hits when it is full.
+     */
+    public Builder asyncDispatch() {
+      return asyncDispatch(
+          DispatchingAdobeAnalyticsClient.DEFAULT_QUEUE_SIZE,
+          DispatchingAdobeAnalyticsClient.DEFAULT_OVERFLOW_POLICY);
+    }
+
+    /**
+     * Moves the calls to the Adobe SDK off Segment's integration thread, to a dedicated thread.
+     *
+     * @param queueSize Number of calls waiting to be made at most.
+     * @param overflowPolicy What happens to a tracking hit when the queue is full.
+     */
+    public Builder asyncDispatch(int queueSize, OverflowPolicy overflowPolicy) {
+      if (queueSize <= 0) {
+        throw new IllegalArgumentException("queueSize must be greater than zero.");
+      }
+      if (overflowPolicy == null) {
+        throw new IllegalArgumentException("overflowPolicy == null");
+      }
+      this.asyncDispatch = true;
+      this.asyncDispatchQueueSize = queueSize;
+      this.asyncDispatchOverflowPolicy = overflowPolicy;
+      return this;
+    }
+
+    /** Moves the lifecycle calls to the Adobe SDK off the thread of the activity callbacks. */
+    public Builder asyncLifecycle() {
+      this.asyncLifecycle = true;
+      return this;
+    }
+
+    /**
+     * Initializes the Adobe SDK on a background thread, holding back up to 1000 calls and 1000
+     * video events made meanwhile.
+     */
+    public Builder deferredInitialization() {
+      return deferredInitialization(DeferredAdobeAnalyticsClient.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Initializes the Adobe SDK on a background thread.
+     *
+     * @param bufferSize Number of calls, and of video events, held back during the initialization
+     *     at most. The oldest tracking hits and video events are discarded beyond it.
+     */
+    public Builder deferredInitialization(int bufferSize) {
+      if (bufferSize <= 0) {
+        throw new IllegalArgumentException("bufferSize must be greater than zero.");
+      }
+      this.deferredInitialization = true;
+      this.deferredInitializationBufferSize = bufferSize;
+      return this;
+    }
+
+    /**
+     * Sets the time after which a video session that is paused, buffering or seeking is ended, 30
+     * minutes by default. Sessions that are playing do not time out.
+     *
+     * @param timeout Timeout, <code>0</code> never ends sessions.
+     * @param unit Unit of the timeout.
+     */
+    public Builder videoSessionTimeout(long timeout, TimeUnit unit) {
+      this.videoSessionTimeoutMillis = toMillis(timeout, unit, "timeout");
+      return this;
+    }
+
+    /**
+     * Sets whether video sessions are paused while the app is in background, <code>true</code> by
+     * default. Apps that keep playing in background should disable it.
+     */
+    public Builder suspendVideoInBackground(boolean suspendVideoInBackground) {
+      this.suspendVideoInBackground = suspendVideoInBackground;
+      return this;
+    }
+
+    /**
+     * Sets the time after which a video session paused in background is ended, 10 minutes by
+     * default.
+     *
+     * @param timeout Timeout, <code>0</code> never ends sessions.
+     * @param unit Unit of the timeout.
+     */
+    public Builder videoBackgroundTimeout(long timeout, TimeUnit unit) {
+      this.videoBackgroundTimeoutMillis = toMillis(timeout, unit, "timeout");
+      return this;
+    }
+
+    /**
+     * Sets the window in which bursts of seek and buffer events are reported once, disabled by
+     * default.
+     *
+     * @param window Window, <code>0</code> reports every event.
+     * @param unit Unit of the window.
+     */
+    public Builder videoCoalescingWindow(long window, TimeUnit unit) {
+      this.videoCoalescingWindowMillis = toMillis(window, unit, "window");
+      return this;
+    }
+
+    /**
+     * @return Factory that creates the integration with the options of this builder.
+     */
+    public Factory build() {
+      final Options options = new Options(this);
+      return new Factory() {
         @Override
         public Integration<?> create(ValueMap settings, com.segment.analytics.Analytics analytics) {
           Logger logger = analytics.logger(ADOBE_KEY);
-          return new AdobeIntegration(settings, analytics, logger);
+          return new AdobeIntegration(settings, analytics, options, logger);
         }
 
         @Override
@@ -44,44 +205,178 @@ public class AdobeIntegration extends Integration<Void> {
           return ADOBE_KEY;
         }
       };
+    }
 
-  private static final String ADOBE_KEY = "Adobe Analytics";
+    private static long toMillis(long duration, TimeUnit unit, String name) {
+      if (duration < 0) {
+        throw new IllegalArgumentException(name + " must not be negative.");
+      }
+      if (unit == null) {
+        throw new IllegalArgumentException("unit == null");
+      }
+      return unit.toMillis(duration);
+    }
+  }
+
+  /** Options set by the app, as opposed to the integration settings delivered by Segment. */
+  static final class Options {
+
+    static final Options DEFAULT = new Options(new Builder());
+
+    final boolean asyncDispatch;
+    final int asyncDispatchQueueSize;
+    final OverflowPolicy asyncDispatchOverflowPolicy;
+    final boolean asyncLifecycle;
+    final boolean deferredInitialization;
+    final int deferredInitializationBufferSize;
+    final long videoSessionTimeoutMillis;
+    final boolean suspendVideoInBackground;
+    final long videoBackgroundTimeoutMillis;
+    final long videoCoalescingWindowMillis;
+
+    Options(Builder builder) {
+      asyncDispatch = builder.asyncDispatch;
+      asyncDispatchQueueSize = builder.asyncDispatchQueueSize;
+      asyncDispatchOverflowPolicy = builder.asyncDispatchOverflowPolicy;
+      asyncLifecycle = builder.asyncLifecycle;
+      deferredInitialization = builder.deferredInitialization;
+      deferredInitializationBufferSize = builder.deferredInitializationBufferSize;
+      videoSessionTimeoutMillis = builder.videoSessionTimeoutMillis;
+      suspendVideoInBackground = builder.suspendVideoInBackground;
+      videoBackgroundTimeoutMillis = builder.videoBackgroundTimeoutMillis;
+      videoCoalescingWindowMillis = builder.videoCoalescingWindowMillis;
+    }
+  }
 
   private Logger logger;
   private AdobeAnalyticsClient adobeAnalytics;
-  private VideoAnalytics video;
-  private EcommerceAnalytics ecommerce;
-  private Map<String, String> eventsMapping;
-  private ContextDataConfiguration contextDataConfiguration;
+  private LifecycleDispatcher lifecycle;
+  private AppLifecycleTracker appLifecycle;
+  /** Created on the first video event, so apps without video never load the heartbeat library. */
+  private Lazy<VideoAnalytics> video;
+  /** Created on the first ecommerce event. */
+  private Lazy<EcommerceAnalytics> ecommerce;
+  /** Current configuration snapshot, each event reads it once. */
+  private final AtomicReference<AdobeConfiguration> configuration = new AtomicReference<>();
+
+  private RouteMetrics metrics;
+
+  /**
+   * Client that initializes the Adobe SDK in background, <code>null</code> unless deferred
+   * initialization is enabled.
+   */
+  private DeferredAdobeAnalyticsClient deferred;
+  /**
+   * Video events received while the Adobe SDK is initialized in background, <code>null</code> once
+   * video events are tracked directly. Only used on Segment's integration thread.
+   */
+  private ArrayDeque<DeferredVideoEvent> deferredVideoEvents;
+
+  private int deferredVideoBufferSize;
+  private final Runnable trackDeferredVideoEvents =
+      new Runnable() {
+        @Override
+        public void run() {
+          trackDeferredVideoEvents();
+        }
+      };
 
-  AdobeIntegration(ValueMap settings, com.segment.analytics.Analytics analytics, Logger logger) {
+  AdobeIntegration(
+      ValueMap settings,
+      com.segment.analytics.Analytics analytics,
+      Options options,
+      Logger logger) {
+    this(
+        settings,
+        analytics.getApplication(),
+        new AdobeAnalyticsClient.DefaultClient(),
+        options,
+        logger);
+  }
+
+  AdobeIntegration(ValueMap settings, Context context, AdobeAnalyticsClient client, Logger logger) {
+    this(settings, context, client, Options.DEFAULT, logger);
+  }
+
+  AdobeIntegration(
+      ValueMap settings,
+      final Context context,
+      AdobeAnalyticsClient client,
+      final Options options,
+      final Logger logger) {
 
-    String serverUrl = settings.getString("heartbeatTrackingServerUrl");
-    String productIdentifier = settings.getString("productIdentifier");
-    boolean ssl = settings.getBoolean("ssl", false);
+    final String serverUrl = settings.getString("heartbeatTrackingServerUrl");
+    final boolean ssl = settings.getBoolean("ssl", false);
+    final boolean debug = logger.logLevel.equals(com.segment.analytics.Analytics.LogLevel.VERBOSE);
 
-    eventsMapping = getSetting("eventsV2", settings);
-    contextDataConfiguration = new ContextDataConfiguration(settings);
+    AdobeConfiguration configuration = new AdobeConfiguration(settings);
+    logInvalidFields(configuration.getContextDataConfiguration(), logger);
+    this.configuration.set(configuration);
 
     this.logger = logger;
+    this.metrics = AdobeMetrics.getRecorder();
+
+    adobeAnalytics = createClient(client, options, metrics, logger);
+    if (options.deferredInitialization) {
+      deferred =
+          new DeferredAdobeAnalyticsClient(
+              adobeAnalytics, options.deferredInitializationBufferSize, logger);
+      adobeAnalytics = deferred;
+      // The heartbeat library is only used once the Adobe SDK has been initialized.
+      deferredVideoEvents = new ArrayDeque<>();
+      deferredVideoBufferSize = options.deferredInitializationBufferSize;
+      final Scheduler scheduler = new Scheduler.MainThreadScheduler();
+      deferred.setReadyListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              scheduler.postDelayed(trackDeferredVideoEvents, 0);
+            }
+          });
+    }
 
     video =
-        new VideoAnalytics(
-            analytics.getApplication(), serverUrl, contextDataConfiguration, ssl, logger);
-    adobeAnalytics = new AdobeAnalyticsClient.DefaultClient();
+        new Lazy<VideoAnalytics>() {
+          @Override
+          protected VideoAnalytics create() {
+            VideoAnalytics videoAnalytics =
+                new VideoAnalytics(
+                    context,
+                    serverUrl,
+                    getConfiguration().getContextDataConfiguration(),
+                    ssl,
+                    logger);
+            videoAnalytics.setDebugLogging(debug);
+            videoAnalytics.setSessionTimeout(options.videoSessionTimeoutMillis);
+            videoAnalytics.setBackgroundPolicy(
+                options.suspendVideoInBackground, options.videoBackgroundTimeoutMillis);
+            videoAnalytics.setCoalescingWindow(options.videoCoalescingWindowMillis);
+            return videoAnalytics;
+          }
+        };
     ecommerce =
-        new EcommerceAnalytics(adobeAnalytics, productIdentifier, contextDataConfiguration, logger);
-
-    if (logger.logLevel.equals(com.segment.analytics.Analytics.LogLevel.VERBOSE)) {
+        new Lazy<EcommerceAnalytics>() {
+          @Override
+          protected EcommerceAnalytics create() {
+            return new EcommerceAnalytics(adobeAnalytics, getConfiguration(), logger);
+          }
+        };
+
+    if (debug) {
       logger.verbose("Enabled debugging");
-      video.setDebugLogging(true);
       adobeAnalytics.setDebugLogging(true);
     }
 
-    Context context = analytics.getApplication();
     // This is the same as adding it to onCreate in the main application class.
     adobeAnalytics.setContext(context);
     logger.verbose("Config.setContext();");
+    lifecycle = createLifecycleDispatcher(adobeAnalytics, options, context);
+    appLifecycle = createAppLifecycleTracker(lifecycle, logger);
+
+    if (deferred != null) {
+      // The calls above, and the ones made until they complete, run on a background thread.
+      deferred.start();
+    }
   }
 
   AdobeIntegration(
@@ -91,42 +386,76 @@ public class AdobeIntegration extends Integration<Void> {
       EcommerceAnalytics ecommerce,
       AdobeAnalyticsClient adobeAnalytics,
       Logger logger) {
+    this(settings, analytics.getApplication(), video, ecommerce, adobeAnalytics, logger);
+  }
+
+  AdobeIntegration(
+      ValueMap settings,
+      Context context,
+      VideoAnalytics video,
+      EcommerceAnalytics ecommerce,
+      AdobeAnalyticsClient adobeAnalytics,
+      Logger logger) {
 
     this.adobeAnalytics = adobeAnalytics;
     this.logger = logger;
-    this.video = video;
-    this.ecommerce = ecommerce;
-    this.eventsMapping = getSetting("eventsV2", settings);
-    contextDataConfiguration = new ContextDataConfiguration(settings);
+    this.video = Lazy.of(video);
+    this.ecommerce = Lazy.of(ecommerce);
+    this.metrics = AdobeMetrics.getRecorder();
+    AdobeConfiguration configuration = new AdobeConfiguration(settings);
+    logInvalidFields(configuration.getContextDataConfiguration(), logger);
+    this.configuration.set(configuration);
 
-    Context context = analytics.getApplication();
     // This is the same as adding it to onCreate in the main application class.
     this.adobeAnalytics.setContext(context);
     logger.verbose("Config.setContext();");
+    lifecycle = createLifecycleDispatcher(adobeAnalytics, Options.DEFAULT, context);
+    appLifecycle = createAppLifecycleTracker(lifecycle, logger);
   }
 
   @Override
   public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
     super.onActivityCreated(activity, savedInstanceState);
 
-    adobeAnalytics.setContext(activity.getApplicationContext());
-    logger.verbose("Config.setContext();");
+    long start = startTimer();
+    if (lifecycle.setContext(activity.getApplicationContext())) {
+      logger.verbose("Config.setContext();");
+    }
+    record(RouteMetrics.Route.LIFECYCLE, start);
+  }
+
+  @Override
+  public void onActivityStarted(Activity activity) {
+    super.onActivityStarted(activity);
+
+    appLifecycle.activityStarted();
   }
 
   @Override
   public void onActivityPaused(Activity activity) {
     super.onActivityPaused(activity);
 
-    adobeAnalytics.pauseCollectingLifecycleData();
-    logger.verbose("Config.pauseCollectingLifecycleData();");
+    long start = startTimer();
+    appLifecycle.activityPaused();
+    record(RouteMetrics.Route.LIFECYCLE, start);
   }
 
   @Override
   public void onActivityResumed(Activity activity) {
     super.onActivityResumed(activity);
 
-    adobeAnalytics.collectLifecycleData(activity);
-    logger.verbose("Config.collectLifecycleData(%s);", activity);
+    long start = startTimer();
+    appLifecycle.activityResumed(activity);
+    record(RouteMetrics.Route.LIFECYCLE, start);
+  }
+
+  @Override
+  public void onActivityStopped(Activity activity) {
+    super.onActivityStopped(activity);
+
+    long start = startTimer();
+    appLifecycle.activityStopped(activity.isChangingConfigurations());
+    record(RouteMetrics.Route.LIFECYCLE, start);
   }
 
   @Override
@@ -145,90 +474,158 @@ public class AdobeIntegration extends Integration<Void> {
   public void screen(ScreenPayload screen) {
     super.screen(screen);
 
+    long start = startTimer();
     Properties properties = screen.properties();
 
-    if (isNullOrEmpty(properties)) {
-      adobeAnalytics.trackState(screen.name(), null);
-      logger.verbose("Analytics.trackState(%s, %s);", screen.name(), null);
-      return;
+    Map<String, Object> cdata = null;
+    if (!isNullOrEmpty(properties)) {
+      cdata = getContextData(configuration.get(), screen, screen.name());
     }
 
-    Map<String, Object> cdata = getContextData(screen);
     adobeAnalytics.trackState(screen.name(), cdata);
     logger.verbose("Analytics.trackState(%s, %s);", screen.name(), cdata);
+    record(RouteMetrics.Route.SCREEN, start);
   }
 
   @Override
   public void track(TrackPayload payload) {
     super.track(payload);
 
-    String eventName = payload.event();
+    long start = startTimer();
+    // The event is translated with the settings it started with, even if they are updated
+    // meanwhile.
+    AdobeConfiguration configuration = this.configuration.get();
+    EventRoutes.Route route = configuration.getEventRoutes().get(payload.event());
 
-    if (VideoAnalytics.Event.isVideoEvent(eventName)) {
-      video.track(payload);
+    if (route == null) {
+      increment(RouteMetrics.Route.UNMAPPED);
+      logger.verbose(
+          "Event must be either configured in Adobe and in the Segment EventsV2 setting, "
+              + "a reserved Adobe Ecommerce or Video event.");
       return;
     }
 
-    if (EcommerceAnalytics.Event.isEcommerceEvent(eventName)) {
-      if (eventsMapping != null && eventsMapping.containsKey(eventName)) {
+    switch (route.type) {
+      case VIDEO:
+        if (!deferVideoEvent(payload, route.videoEvent, configuration)) {
+          trackVideoEvent(payload, route.videoEvent, configuration, start);
+        }
+        break;
+
+      case ECOMMERCE:
+        ecommerce.get().track(payload, route.ecommerceEvent, configuration);
+        metrics.record(route.ecommerceEvent, start);
+        break;
+
+      case MAPPED_ECOMMERCE:
+        increment(RouteMetrics.Route.UNSUPPORTED);
         logger.verbose(
             "Segment currently does not support mapping specced ecommerce events to "
                 + "custom Adobe events.");
-        return;
-      }
-
-      ecommerce.track(payload);
-      return;
+        break;
+
+      case ACTION:
+        Map<String, Object> cdata = getContextData(configuration, payload, payload.event());
+        adobeAnalytics.trackAction(route.action, cdata);
+        logger.verbose("Analytics.trackAction(%s, %s);", route.action, cdata);
+        record(RouteMetrics.Route.ACTION, start);
+        break;
     }
+  }
 
-    if (eventsMapping == null
-        || eventsMapping.size() == 0
-        || !eventsMapping.containsKey(eventName)) {
-      logger.verbose(
-          "Event must be either configured in Adobe and in the Segment EventsV2 setting, "
-              + "a reserved Adobe Ecommerce or Video event.");
-      return;
+  private void trackVideoEvent(
+      TrackPayload payload,
+      VideoAnalytics.Event event,
+      AdobeConfiguration configuration,
+      long start) {
+    if (!video.get().track(payload, event, configuration)) {
+      increment(RouteMetrics.Route.VIDEO_DROPPED);
+    } else {
+      metrics.record(event, start);
     }
+  }
 
-    String event = String.valueOf(eventsMapping.get(eventName));
-    Map<String, Object> cdata = getContextData(payload);
+  /**
+   * Holds a video event back while the Adobe SDK is initialized in background. The oldest event is
+   * discarded when the buffer is full, like the hits of the deferred client.
+   *
+   * @return <code>true</code> if the event is held back, <code>false</code> if it must be tracked.
+   */
+  private boolean deferVideoEvent(
+      TrackPayload payload, VideoAnalytics.Event event, AdobeConfiguration configuration) {
+    if (deferredVideoEvents == null) {
+      return false;
+    }
+    if (deferred.isReady()) {
+      // Initialization completed before the posted replay ran.
+      trackDeferredVideoEvents();
+      return false;
+    }
 
-    adobeAnalytics.trackAction(event, cdata);
-    logger.verbose("Analytics.trackAction(%s, %s);", event, cdata);
+    if (deferredVideoEvents.size() >= deferredVideoBufferSize) {
+      DeferredVideoEvent oldest = deferredVideoEvents.poll();
+      increment(RouteMetrics.Route.VIDEO_DROPPED);
+      logger.verbose(
+          "Initialization buffer is full, dropped video event %s.", oldest.payload.event());
+    }
+    deferredVideoEvents.add(new DeferredVideoEvent(payload, event, configuration));
+    return true;
   }
 
-  private Map<String, Object> getContextData(BasePayload payload) {
-
-    Properties extraProperties = new Properties();
-    if (payload.containsKey("properties")) {
-      extraProperties.putAll(payload.getValueMap("properties"));
+  /**
+   * Tracks the video events held back during the initialization, in the order they were received.
+   */
+  private void trackDeferredVideoEvents() {
+    ArrayDeque<DeferredVideoEvent> events = deferredVideoEvents;
+    if (events == null) {
+      return;
     }
+    deferredVideoEvents = null;
 
-    // Remove products just in case
-    extraProperties.remove("products");
+    DeferredVideoEvent event;
+    while ((event = events.poll()) != null) {
+      trackVideoEvent(event.payload, event.event, event.configuration, startTimer());
+    }
+  }
 
-    Map<String, Object> contextData = new HashMap<>();
+  /** Video event received while the Adobe SDK is initialized in background. */
+  private static final class DeferredVideoEvent {
 
-    for (String field : contextDataConfiguration.getEventFieldNames()) {
-      Object value = null;
-      try {
-        value = contextDataConfiguration.searchValue(field, payload);
-      } catch (IllegalArgumentException e) {
-        // Ignore.
-      }
+    final TrackPayload payload;
+    final VideoAnalytics.Event event;
+    /** Settings the event started with. */
+    final AdobeConfiguration configuration;
 
-      if (value != null) {
-        String variable = contextDataConfiguration.getVariableName(field);
-        contextData.put(variable, value);
-        extraProperties.remove(field);
-      }
+    DeferredVideoEvent(
+        TrackPayload payload, VideoAnalytics.Event event, AdobeConfiguration configuration) {
+      this.payload = payload;
+      this.event = event;
+      this.configuration = configuration;
     }
+  }
 
-    // Add all extra properties
-    for (String extraProperty : extraProperties.keySet()) {
-      String variable = contextDataConfiguration.getPrefix() + extraProperty;
-      contextData.put(variable, extraProperties.get(extraProperty));
+  /**
+   * Reports the context data variables that can never be resolved, once when the settings are
+   * loaded instead of on every event.
+   */
+  private static void logInvalidFields(ContextDataConfiguration configuration, Logger logger) {
+    for (String field : configuration.getInvalidFieldNames()) {
+      logger.verbose("Ignoring context data variable %s, its field name is invalid.", field);
     }
+  }
+
+  private Map<String, Object> getContextData(
+      AdobeConfiguration configuration, BasePayload payload, String name) {
+    Map<String, Object> contextData = new HashMap<>();
+
+    ContextDataBuilder.build(
+        configuration.getContextDataConfiguration(),
+        payload,
+        payload.getValueMap("properties"),
+        configuration.getTranslationPlans(),
+        name,
+        ContextDataBuilder.Format.RAW,
+        contextData);
 
     if (contextData.size() == 0) {
       return null;
@@ -238,18 +635,93 @@ public class AdobeIntegration extends Integration<Void> {
   }
 
   /**
-   * Retrieves the setting as a map of strings, or an empty map if it is not defined.
+   * Creates the Adobe Analytics client. Calls are made on Segment's integration thread unless
+   * asynchronous dispatching is enabled, in which case they are moved to a dedicated thread.
    *
-   * @param name Setting name.
-   * @return Strings map.
+   * @param client Client that calls the Adobe SDK.
+   * @param options Options set by the app.
+   * @param metrics Metrics recorder.
+   * @param logger Logger.
+   * @return Adobe Analytics client.
    */
-  private static Map<String, String> getSetting(String name, ValueMap settings) {
-    ValueMap setting = settings.getValueMap(name);
-    if (setting == null) {
-      setting = new ValueMap();
+  private static AdobeAnalyticsClient createClient(
+      AdobeAnalyticsClient client, Options options, RouteMetrics metrics, Logger logger) {
+    client = new InstrumentedAdobeAnalyticsClient(client, metrics);
+    if (!options.asyncDispatch) {
+      return client;
     }
+    return new DispatchingAdobeAnalyticsClient(
+        client, options.asyncDispatchQueueSize, options.asyncDispatchOverflowPolicy, logger);
+  }
 
-    return setting.toStringMap();
+  /**
+   * Creates the dispatcher of lifecycle calls. Calls are made on the thread of the activity
+   * callbacks unless asynchronous lifecycle is enabled, in which case they are moved to a
+   * background thread.
+   *
+   * @param client Adobe Analytics client.
+   * @param options Options set by the app.
+   * @param context Context the client was initialized with.
+   * @return Lifecycle dispatcher.
+   */
+  private static LifecycleDispatcher createLifecycleDispatcher(
+      AdobeAnalyticsClient client, Options options, Context context) {
+    Executor executor =
+        options.asyncLifecycle
+            ? LifecycleDispatcher.newSerialExecutor()
+            : LifecycleDispatcher.DIRECT_EXECUTOR;
+    return new LifecycleDispatcher(client, executor, context);
+  }
+
+  /**
+   * Creates the tracker of app level lifecycle, which only calls Adobe when the app goes to
+   * background or returns to foreground. Video sessions are suspended and resumed with the app.
+   *
+   * @param lifecycle Dispatcher of lifecycle calls.
+   * @param logger Logger.
+   * @return App lifecycle tracker.
+   */
+  private AppLifecycleTracker createAppLifecycleTracker(
+      LifecycleDispatcher lifecycle, Logger logger) {
+    AppLifecycleTracker.Listener listener =
+        new AppLifecycleTracker.Listener() {
+          @Override
+          public void onForeground() {
+            // Sessions only exist once the video subsystem has been created.
+            if (video.isCreated()) {
+              video.get().resumeSessions();
+            }
+          }
+
+          @Override
+          public void onBackground() {
+            if (video.isCreated()) {
+              video.get().suspendSessions();
+            }
+          }
+        };
+    return new AppLifecycleTracker(
+        lifecycle,
+        new Scheduler.MainThreadScheduler(),
+        AppLifecycleTracker.DEFAULT_DEBOUNCE_MILLIS,
+        listener,
+        logger);
+  }
+
+  /**
+   * @return Start time of a measured call, {@link RouteMetrics#NOT_STARTED} while metrics are
+   *     disabled.
+   */
+  private long startTimer() {
+    return metrics.start();
+  }
+
+  private void record(RouteMetrics.Route route, long start) {
+    metrics.record(route, start);
+  }
+
+  private void increment(RouteMetrics.Route route) {
+    metrics.increment(route);
   }
 
   @Override
@@ -261,8 +733,10 @@ public class AdobeIntegration extends Integration<Void> {
   public void flush() {
     super.flush();
 
+    long start = startTimer();
     adobeAnalytics.flushQueue();
     logger.verbose("Analytics.sendQueuedHits();");
+    record(RouteMetrics.Route.FLUSH, start);
   }
 
   @Override
@@ -273,8 +747,51 @@ public class AdobeIntegration extends Integration<Void> {
     logger.verbose("Config.setUserIdentifier(null);");
   }
 
+  /**
+   * Replaces the events mapping, the context data variables and the product identifier with the
+   * ones of new settings. The new settings are compiled on the calling thread and swapped in at
+   * once: events that are being translated finish with the previous settings and the following
+   * events use the new ones. Video sessions and the Adobe client are kept as they are, so the
+   * remaining settings, such as the heartbeat tracking server, only apply when the integration is
+   * created.
+   *
+   * @param settings Integration settings.
+   */
+  public void updateSettings(ValueMap settings) {
+    AdobeConfiguration next = new AdobeConfiguration(settings);
+    logInvalidFields(next.getContextDataConfiguration(), logger);
+    configuration.set(next);
+    logger.verbose("Updated settings.");
+  }
+
+  /**
+   * @return <code>true</code> if the video subsystem has been created.
+   */
+  boolean isVideoCreated() {
+    return video.isCreated();
+  }
+
+  /**
+   * @return Client that initializes the Adobe SDK in background, <code>null</code> unless deferred
+   *     initialization is enabled.
+   */
+  DeferredAdobeAnalyticsClient getDeferredClient() {
+    return deferred;
+  }
+
+  /**
+   * @return <code>true</code> if the ecommerce subsystem has been created.
+   */
+  boolean isEcommerceCreated() {
+    return ecommerce.isCreated();
+  }
+
+  AdobeConfiguration getConfiguration() {
+    return configuration.get();
+  }
+
   Map<String, String> getEventsMapping() {
-    return eventsMapping;
+    return configuration.get().getEventRoutes().getEventsMapping();
   }
 
   /**
@@ -283,11 +800,11 @@ public class AdobeIntegration extends Integration<Void> {
    * @param eventsMapping Events mapping as <code>{segment event, adobe analytics event}</code>.
    */
   void setEventsMapping(Map<String, String> eventsMapping) {
-    this.eventsMapping = eventsMapping;
+    configuration.set(configuration.get().withEventsMapping(eventsMapping));
   }
 
   ContextDataConfiguration getContextDataConfiguration() {
-    return contextDataConfiguration;
+    return configuration.get().getContextDataConfiguration();
   }
 
   /**
@@ -296,6 +813,19 @@ public class AdobeIntegration extends Integration<Void> {
    * @param contextDataConfiguration New context data configuration.
    */
   void setContextDataConfiguration(ContextDataConfiguration contextDataConfiguration) {
-    this.contextDataConfiguration = contextDataConfiguration;
+    configuration.set(configuration.get().withContextDataConfiguration(contextDataConfiguration));
+  }
+
+  TranslationPlanCache getTranslationPlans() {
+    return configuration.get().getTranslationPlans();
+  }
+
+  /**
+   * Allows to redefine the metrics recorder. Only used for testing.
+   *
+   * @param metrics Metrics recorder.
+   */
+  void setMetrics(RouteMetrics metrics) {
+    this.metrics = metrics;
   }
 }
@@ -0,0 +1,150 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Call counts and latencies of the Adobe Analytics integration, per route: screens, mapped actions,
+ * each ecommerce and video event, lifecycle callbacks, flushes and the calls made to the Adobe SDK.
+ * Events dropped because they are not mapped are counted as well.
+ *
+ * <p>Metrics are disabled by default, and only cost a flag check while disabled. They can be
+ * enabled and disabled at any time, and apply to every integration:
+ *
+ * <pre><code>
+ * AdobeMetrics.setEnabled(true);
+ * analytics = new Analytics.Builder(this, "write_key")
+ *     .use(AdobeIntegration.FACTORY)
+ *     .build();
+ * ...
+ * Map&lt;String, AdobeMetrics.RouteSnapshot&gt; metrics = AdobeMetrics.snapshot();
+ * </code></pre>
+ */
+public final class AdobeMetrics {
+
+  private static final RouteMetrics metrics = new RouteMetrics(false);
+
+  private AdobeMetrics() {}
+
+  /**
+   * Enables or disables metrics, for the integrations created before as well as after. Disabling
+   * metrics discards everything recorded so far.
+   *
+   * @param enabled <code>true</code> to record metrics.
+   */
+  public static synchronized void setEnabled(boolean enabled) {
+    metrics.setEnabled(enabled);
+  }
+
+  /**
+   * @return <code>true</code> if metrics are enabled.
+   */
+  public static boolean isEnabled() {
+    return metrics.isEnabled();
+  }
+
+  /**
+   * Retrieves the metrics recorded so far. Values are read while events are being recorded, so
+   * counts from different routes may be slightly out of sync.
+   *
+   * @return Snapshot of every route keyed by route name, empty if metrics are disabled.
+   */
+  public static Map<String, RouteSnapshot> snapshot() {
+    if (!metrics.isEnabled()) {
+      return Collections.emptyMap();
+    }
+    return Collections.unmodifiableMap(metrics.snapshot());
+  }
+
+  /**
+   * @return Metrics recorder shared by every integration, which checks whether metrics are enabled.
+   */
+  static RouteMetrics getRecorder() {
+    return metrics;
+  }
+
+  /** Counters and latency histogram of a single route. */
+  public static final class RouteSnapshot {
+
+    private final String route;
+    private final long count;
+    private final long totalNanos;
+    private final long[] bucketCounts;
+
+    RouteSnapshot(String route, long count, long totalNanos, long[] bucketCounts) {
+      this.route = route;
+      this.count = count;
+      this.totalNanos = totalNanos;
+      this.bucketCounts = bucketCounts;
+    }
+
+    /**
+     * @return Route name, for example <code>ecommerce.Order Completed</code>.
+     */
+    public String getRoute() {
+      return route;
+    }
+
+    /**
+     * @return Number of calls.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * @return Total time spent in the route, in nanoseconds.
+     */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * Retrieves the upper bounds of the latency histogram buckets. The last bucket is unbounded and
+     * reported as {@link Long#MAX_VALUE}.
+     *
+     * @return Bucket upper bounds, in nanoseconds.
+     */
+    public long[] getBucketUpperBoundsNanos() {
+      return RouteMetrics.BUCKET_UPPER_BOUNDS_NANOS.clone();
+    }
+
+    /**
+     * @return Number of calls in each latency bucket.
+     */
+    public long[] getBucketCounts() {
+      return bucketCounts.clone();
+    }
+
+    /**
+     * Estimates a latency percentile as the upper bound of the bucket that contains it.
+     *
+     * @param percentile Percentile, between 0 and 100.
+     * @return Latency in nanoseconds, or 0 if no latency was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+      long total = 0;
+      for (long bucketCount : bucketCounts) {
+        total += bucketCount;
+      }
+      if (total == 0) {
+        return 0;
+      }
+
+      long rank = (long) Math.ceil(total * percentile / 100.0);
+      long seen = 0;
+      for (int i = 0; i < bucketCounts.length; i++) {
+        seen += bucketCounts[i];
+        if (seen >= rank && bucketCounts[i] > 0) {
+          return RouteMetrics.BUCKET_UPPER_BOUNDS_NANOS[i];
+        }
+      }
+      return RouteMetrics.BUCKET_UPPER_BOUNDS_NANOS[bucketCounts.length - 1];
+    }
+
+    @Override
+    public String toString() {
+      return route + "{count=" + count + ", totalNanos=" + totalNanos + "}";
+    }
+  }
+}
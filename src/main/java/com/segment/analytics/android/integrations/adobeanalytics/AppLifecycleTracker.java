@@ -0,0 +1,133 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import com.segment.analytics.integrations.Logger;
+
+/**
+ * Turns activity callbacks into app level foreground and background transitions, so the Adobe SDK
+ * only processes its lifecycle when the whole app leaves or returns, not on every screen change.
+ *
+ * <p>Switching activities pauses one activity before the next one is resumed. When the last resumed
+ * activity pauses, the app is only considered in background after a short debounce window, and a
+ * resume within the window cancels it. Once no activity is started anymore the app is in background
+ * right away, unless the activity is being recreated.
+ */
+class AppLifecycleTracker {
+
+  /** Time without resumed activities after which the app is in background. */
+  static final long DEFAULT_DEBOUNCE_MILLIS = 700;
+
+  private final LifecycleDispatcher lifecycle;
+  private final Scheduler scheduler;
+  private final long debounceMillis;
+  private final Listener listener;
+  private final Logger logger;
+
+  private int startedActivities;
+  private int resumedActivities;
+  private boolean foreground;
+  private boolean backgroundPending;
+
+  private final Runnable background =
+      new Runnable() {
+        @Override
+        public void run() {
+          synchronized (AppLifecycleTracker.this) {
+            if (backgroundPending) {
+              enterBackground();
+            }
+          }
+        }
+      };
+
+  /**
+   * Creates a tracker, the app starts in background.
+   *
+   * @param lifecycle Dispatcher of the Adobe lifecycle calls.
+   * @param scheduler Scheduler of the debounce window.
+   * @param debounceMillis Time without resumed activities after which the app is in background.
+   * @param listener Listener of the transitions, called after the Adobe lifecycle calls.
+   * @param logger Logger.
+   */
+  AppLifecycleTracker(
+      LifecycleDispatcher lifecycle,
+      Scheduler scheduler,
+      long debounceMillis,
+      Listener listener,
+      Logger logger) {
+    this.lifecycle = lifecycle;
+    this.scheduler = scheduler;
+    this.debounceMillis = debounceMillis;
+    this.listener = listener;
+    this.logger = logger;
+  }
+
+  synchronized void activityStarted() {
+    startedActivities++;
+  }
+
+  /**
+   * Collects lifecycle data if the app returns to foreground.
+   *
+   * @param activity Resumed activity.
+   */
+  synchronized void activityResumed(Activity activity) {
+    resumedActivities++;
+    if (backgroundPending) {
+      // Another activity of the app took over within the debounce window.
+      backgroundPending = false;
+      scheduler.cancel(background);
+      return;
+    }
+    if (!foreground) {
+      foreground = true;
+      lifecycle.collectLifecycleData(activity);
+      logger.verbose("Config.collectLifecycleData(%s);", activity);
+      listener.onForeground();
+    }
+  }
+
+  synchronized void activityPaused() {
+    // Activities resumed before the integration was created are never counted.
+    resumedActivities = Math.max(0, resumedActivities - 1);
+    if (resumedActivities == 0 && foreground && !backgroundPending) {
+      backgroundPending = true;
+      scheduler.postDelayed(background, debounceMillis);
+    }
+  }
+
+  /**
+   * Moves the app to background if no activity is visible anymore.
+   *
+   * @param changingConfigurations Whether the activity is stopped to be recreated, for example when
+   *     the device is rotated, in which case the debounce window applies.
+   */
+  synchronized void activityStopped(boolean changingConfigurations) {
+    startedActivities = Math.max(0, startedActivities - 1);
+    if (startedActivities == 0 && backgroundPending && !changingConfigurations) {
+      // No activity is visible, the app is in background without waiting.
+      scheduler.cancel(background);
+      enterBackground();
+    }
+  }
+
+  synchronized boolean isForeground() {
+    return foreground;
+  }
+
+  private void enterBackground() {
+    backgroundPending = false;
+    foreground = false;
+    lifecycle.pauseCollectingLifecycleData();
+    logger.verbose("Config.pauseCollectingLifecycleData();");
+    listener.onBackground();
+  }
+
+  /** Receives the app level transitions, on the thread of the activity callbacks. */
+  interface Listener {
+
+    void onForeground();
+
+    void onBackground();
+  }
+}
@@ -0,0 +1,76 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.content.Context;
+import java.util.Map;
+
+/**
+ * Call to an {@link AdobeAnalyticsClient} that is held back to be made later, on another thread.
+ */
+final class ClientCommand {
+
+  static final int TRACK_ACTION = 0;
+  static final int TRACK_STATE = 1;
+  static final int SET_CONTEXT = 2;
+  static final int PAUSE_LIFECYCLE = 3;
+  static final int COLLECT_LIFECYCLE = 4;
+  static final int SET_USER_IDENTIFIER = 5;
+  static final int SET_DEBUG_LOGGING = 6;
+  static final int FLUSH_QUEUE = 7;
+
+  final int type;
+  final String name;
+  final Map<String, Object> contextData;
+  final Object argument;
+
+  ClientCommand(int type, String name, Map<String, Object> contextData, Object argument) {
+    this.type = type;
+    this.name = name;
+    this.contextData = contextData;
+    this.argument = argument;
+  }
+
+  /**
+   * @return <code>true</code> if the call is a tracking hit, which may be discarded when there is
+   *     no room left to hold it.
+   */
+  boolean isHit() {
+    return type == TRACK_ACTION || type == TRACK_STATE;
+  }
+
+  /**
+   * Makes the call.
+   *
+   * @param client Client that receives the call.
+   */
+  void forward(AdobeAnalyticsClient client) {
+    switch (type) {
+      case TRACK_ACTION:
+        client.trackAction(name, contextData);
+        break;
+      case TRACK_STATE:
+        client.trackState(name, contextData);
+        break;
+      case SET_CONTEXT:
+        client.setContext((Context) argument);
+        break;
+      case PAUSE_LIFECYCLE:
+        client.pauseCollectingLifecycleData();
+        break;
+      case COLLECT_LIFECYCLE:
+        client.collectLifecycleData((Activity) argument);
+        break;
+      case SET_USER_IDENTIFIER:
+        client.setUserIdentifier(name);
+        break;
+      case SET_DEBUG_LOGGING:
+        client.setDebugLogging((Boolean) argument);
+        break;
+      case FLUSH_QUEUE:
+        client.flushQueue();
+        break;
+      default:
+        throw new AssertionError("Unknown command: " + type);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.os.SystemClock;
+
+/**
+ * Monotonic time source used to measure playback. Unlike the wall clock, it never goes backwards or
+ * jumps when the device time is changed.
+ */
+interface Clock {
+
+  /**
+   * Retrieves the time elapsed since an arbitrary origin. Only differences between two values are
+   * meaningful.
+   *
+   * @return Elapsed time in milliseconds.
+   */
+  long elapsedMillis();
+
+  /**
+   * Default clock, based on the time elapsed since boot, including deep sleep.
+   *
+   * <p>Do not add logic here.
+   */
+  class DefaultClock implements Clock {
+
+    DefaultClock() {}
+
+    @Override
+    public long elapsedMillis() {
+      return SystemClock.elapsedRealtime();
+    }
+  }
+}
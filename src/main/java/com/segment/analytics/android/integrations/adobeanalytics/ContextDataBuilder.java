@@ -0,0 +1,135 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.ValueMap;
+import com.segment.analytics.integrations.BasePayload;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Translates event properties into Adobe Analytics context data. Shared by screen, track, ecommerce
+ * and video events, which only differ in the properties they reserve for themselves and in how
+ * values are written.
+ *
+ * <p>Every property is classified in a single pass as either a mapped variable, a property reserved
+ * by the event family, or an extra property that is sent with the configured prefix. Values are
+ * written straight into the output map, without copying the event properties.
+ */
+final class ContextDataBuilder {
+
+  /** Defines how values are written into the context data. */
+  enum Format {
+    /** Values are written as they are defined in the event. */
+    RAW(false, false),
+    /** Mapped variables are written as strings, extra properties as they are defined. */
+    MAPPED_AS_STRING(true, false),
+    /** All values are written as strings. */
+    STRING(true, true);
+
+    private final boolean mappedAsString;
+    private final boolean extraAsString;
+
+    Format(boolean mappedAsString, boolean extraAsString) {
+      this.mappedAsString = mappedAsString;
+      this.extraAsString = extraAsString;
+    }
+  }
+
+  /** Properties reserved by screen and custom track events. */
+  static final Set<String> DEFAULT_RESERVED_KEYS = Collections.singleton("products");
+
+  private ContextDataBuilder() {}
+
+  /**
+   * Adds the context data of an event into the provided map.
+   *
+   * @param configuration Context data configuration.
+   * @param payload Event payload, used by fields relative to the root of the payload.
+   * @param properties Event properties, may be <code>null</code>.
+   * @param reservedKeys Properties that must not be sent as extra properties.
+   * @param format How values are written.
+   * @param contextData Map where context data is written. Values are either the event values or
+   *     strings, depending on <code>format</code>.
+   */
+  @SuppressWarnings("unchecked")
+  static void build(
+      ContextDataConfiguration configuration,
+      BasePayload payload,
+      ValueMap properties,
+      Set<String> reservedKeys,
+      Format format,
+      Map<String, ?> contextData) {
+    Map<String, Object> output = (Map<String, Object>) contextData;
+    writeMappedVariables(configuration, payload, properties, format, output);
+
+    if (properties == null) {
+      return;
+    }
+
+    for (Map.Entry<String, Object> entry : properties.entrySet()) {
+      String key = entry.getKey();
+      Object value = entry.getValue();
+
+      if (reservedKeys.contains(key)) {
+        continue;
+      }
+
+      // Mapped properties were already added with their variable name.
+      if (value != null && configuration.isPropertyField(key)) {
+        continue;
+      }
+
+      if (format.extraAsString && value != null) {
+        value = String.valueOf(value);
+      }
+      output.put(configuration.getPrefixedName(key), value);
+    }
+  }
+
+  /**
+   * Adds the context data of an event into the provided map, using a translation plan for the extra
+   * properties. Produces the same context data as {@link #build(ContextDataConfiguration,
+   * BasePayload, ValueMap, Set, Format, Map)} with the reserved keys the plan was built with.
+   *
+   * @param configuration Context data configuration the plan was built from.
+   * @param payload Event payload, used by fields relative to the root of the payload.
+   * @param properties Event properties, may be <code>null</code>.
+   * @param plans Translation plans of the event family.
+   * @param event Event or screen name.
+   * @param format How values are written.
+   * @param contextData Map where context data is written.
+   */
+  @SuppressWarnings("unchecked")
+  static void build(
+      ContextDataConfiguration configuration,
+      BasePayload payload,
+      ValueMap properties,
+      TranslationPlanCache plans,
+      String event,
+      Format format,
+      Map<String, ?> contextData) {
+    Map<String, Object> output = (Map<String, Object>) contextData;
+    writeMappedVariables(configuration, payload, properties, format, output);
+
+    if (properties == null || properties.isEmpty()) {
+      return;
+    }
+    plans.writeExtraProperties(event, properties, format.extraAsString, output);
+  }
+
+  private static void writeMappedVariables(
+      ContextDataConfiguration configuration,
+      BasePayload payload,
+      ValueMap properties,
+      Format format,
+      Map<String, Object> output) {
+    for (ContextDataConfiguration.Field field : configuration.getFields()) {
+      Object value = field.getValue(properties, payload);
+
+      if (value != null) {
+        output.put(field.getVariable(), format.mappedAsString ? String.valueOf(value) : value);
+      }
+    }
+  }
+}
@@ -3,10 +3,16 @@ package com.segment.analytics.android.integrations.adobeanalytics;
 import com.segment.analytics.ValueMap;
 import com.segment.analytics.integrations.BasePayload;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Encapsulates Context Data settings:
@@ -18,8 +24,24 @@ import java.util.Set;
  */
 class ContextDataConfiguration {
 
+  /** Maximum number of names kept by {@link #getPrefixedName(String)}. */
+  static final int MAX_PREFIXED_NAMES = 512;
+
+  /** Estimated size of a map entry, without its key and value. */
+  private static final int ENTRY_BYTES = 32;
+  /** Estimated size of a string, without its characters. */
+  private static final int STRING_BYTES = 40;
+
   private Map<String, String> contextDataVariables;
+  private List<Field> fields;
+  private Set<String> propertyFieldNames;
+  private List<String> invalidFieldNames;
   private String prefix;
+  /**
+   * Extra property keys and their prefixed variable names. The prefix never changes once the
+   * configuration is created, so a new configuration starts with an empty cache.
+   */
+  private final ConcurrentHashMap<String, String> prefixedNames = new ConcurrentHashMap<>();
 
   ContextDataConfiguration(ValueMap settings) {
     this(
@@ -40,6 +62,26 @@ class ContextDataConfiguration {
     if (this.prefix == null || this.prefix.equals("a.")) {
       this.prefix = "";
     }
+
+    List<Field> fields = new ArrayList<>(this.contextDataVariables.size());
+    Set<String> propertyFieldNames = new HashSet<>();
+    List<String> invalidFieldNames = new ArrayList<>();
+    for (Map.Entry<String, String> entry : this.contextDataVariables.entrySet()) {
+      Field field = Field.compile(entry.getKey(), entry.getValue());
+      if (field == null) {
+        // Invalid fields can never resolve a value, so they are skipped.
+        invalidFieldNames.add(entry.getKey());
+        continue;
+      }
+
+      fields.add(field);
+      if (field.isProperty()) {
+        propertyFieldNames.add(field.getName());
+      }
+    }
+    this.fields = Collections.unmodifiableList(fields);
+    this.propertyFieldNames = propertyFieldNames;
+    this.invalidFieldNames = Collections.unmodifiableList(invalidFieldNames);
   }
 
   /**
@@ -55,6 +97,37 @@ class ContextDataConfiguration {
     return contextDataVariables.get(fieldName);
   }
 
+  /**
+   * Retrieves the Segment fields that have an associated Adobe Analytics variable, already parsed
+   * from their dot notation. Fields with an invalid path are not included.
+   *
+   * @return List of compiled fields.
+   */
+  List<Field> getFields() {
+    return fields;
+  }
+
+  /**
+   * Retrieves the Segment fields that were skipped because their dot notation path is invalid, so
+   * they can be reported once when the settings are loaded.
+   *
+   * @return List of field names.
+   */
+  List<String> getInvalidFieldNames() {
+    return invalidFieldNames;
+  }
+
+  /**
+   * Identifies if a property key is mapped to an Adobe Analytics variable, in which case it is not
+   * sent as an extra property when it has a value.
+   *
+   * @param key Property key.
+   * @return <code>true</code> if the property is mapped, <code>false</code> otherwise.
+   */
+  boolean isPropertyField(String key) {
+    return propertyFieldNames.contains(key);
+  }
+
   /**
    * Inspects the event payload and retrieves the value described in the field. Field respects dot
    * notation (myObject.name) for event properties. If there is a dot present at the beginning of
@@ -70,64 +143,14 @@ class ContextDataConfiguration {
    *
    * @param field Field name.
    * @param eventPayload Event payload.
-   * @return The value if found, <code>null</code> otherwise.
+   * @return The value if found, <code>null</code> otherwise or if the field name is invalid.
    */
   Object searchValue(String field, BasePayload eventPayload) {
-    if (field == null || field.trim().length() == 0) {
-      throw new IllegalArgumentException("The field name must be defined");
+    Field compiled = Field.compile(field, null);
+    if (compiled == null) {
+      return null;
     }
-
-    String[] searchPaths = field.split("\\.");
-
-    // Using the properties object as starting point by default.
-    ValueMap values = eventPayload.getValueMap("properties");
-
-    // Dot is present at the beginning of the field name
-    if (searchPaths[0].equals("")) {
-      // Using the root of the payload as starting point
-      values = eventPayload;
-      searchPaths = Arrays.copyOfRange(searchPaths, 1, searchPaths.length);
-    }
-
-    return searchValue(searchPaths, values);
-  }
-
-  private Object searchValue(String[] searchPath, ValueMap values) {
-
-    ValueMap currentValues = values;
-
-    for (int i = 0; i < searchPath.length; i++) {
-      String path = searchPath[i];
-
-      if (path.trim().length() == 0) {
-        throw new IllegalArgumentException("Invalid field name");
-      }
-
-      if (!currentValues.containsKey(path)) {
-        return null;
-      }
-
-      Object value = currentValues.get(path);
-      if (value == null) {
-        return null;
-      }
-
-      if (i == searchPath.length - 1) {
-        return value;
-      }
-
-      if (value instanceof ValueMap) {
-        currentValues = (ValueMap) value;
-      } else if (value instanceof Map) {
-        try {
-          currentValues = new ValueMap((Map<String, Object>) value);
-        } catch (ClassCastException e) {
-          return null;
-        }
-      }
-    }
-
-    return null;
+    return compiled.getValue(eventPayload.getValueMap("properties"), eventPayload);
   }
 
   /**
@@ -149,6 +172,56 @@ class ContextDataConfiguration {
     return prefix;
   }
 
+  /**
+   * Retrieves the Adobe Analytics variable name of an extra property, which is the property key
+   * with the configured prefix. Names are cached, so the same string is returned for every event
+   * instead of building a new one. The cache is bounded: once full, an arbitrary name is evicted
+   * for each new one.
+   *
+   * @param key Property key.
+   * @return Variable name.
+   */
+  String getPrefixedName(String key) {
+    if (prefix.length() == 0) {
+      return key;
+    }
+
+    String name = prefixedNames.get(key);
+    if (name == null) {
+      name = prefix + key;
+      if (prefixedNames.size() >= MAX_PREFIXED_NAMES) {
+        Iterator<String> keys = prefixedNames.keySet().iterator();
+        if (keys.hasNext()) {
+          keys.next();
+          keys.remove();
+        }
+      }
+      prefixedNames.put(key, name);
+    }
+    return name;
+  }
+
+  int getPrefixedNameCount() {
+    return prefixedNames.size();
+  }
+
+  /**
+   * Estimates the memory retained by the prefixed names cache, counting the entries and the key and
+   * name strings. The hash table itself is not included.
+   *
+   * @return Estimated size in bytes.
+   */
+  long getPrefixedNamesMemoryUsage() {
+    long bytes = 0;
+    for (Map.Entry<String, String> entry : prefixedNames.entrySet()) {
+      bytes +=
+          ENTRY_BYTES
+              + 2 * STRING_BYTES
+              + 2 * (entry.getKey().length() + entry.getValue().length());
+    }
+    return bytes;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -164,4 +237,112 @@ class ContextDataConfiguration {
 
     return hash;
   }
+
+  /**
+   * A Segment field whose dot notation path has been parsed ahead of time, so resolving its value
+   * on every event does not need to split the field name again.
+   */
+  static class Field {
+
+    private final String name;
+    private final String variable;
+    private final String[] path;
+    private final boolean root;
+
+    private Field(String name, String variable, String[] path, boolean root) {
+      this.name = name;
+      this.variable = variable;
+      this.path = path;
+      this.root = root;
+    }
+
+    /**
+     * Parses a field name as described in {@link ContextDataConfiguration#searchValue(String,
+     * BasePayload)}.
+     *
+     * @param name Field name.
+     * @param variable Adobe Analytics variable associated to the field.
+     * @return The compiled field, or <code>null</code> if the field name is not defined or any
+     *     segment of its path is blank.
+     */
+    static Field compile(String name, String variable) {
+      if (name == null || name.trim().length() == 0) {
+        return null;
+      }
+
+      String[] path = name.split("\\.");
+      boolean root = false;
+
+      // Dot is present at the beginning of the field name
+      if (path.length > 0 && path[0].equals("")) {
+        root = true;
+        path = Arrays.copyOfRange(path, 1, path.length);
+      }
+
+      if (path.length == 0) {
+        return null;
+      }
+
+      for (String segment : path) {
+        if (segment.trim().length() == 0) {
+          return null;
+        }
+      }
+
+      return new Field(name, variable, path, root);
+    }
+
+    /**
+     * Retrieves the value described by this field. The properties are resolved once per event by
+     * the caller and shared across all fields.
+     *
+     * @param properties Event properties, may be <code>null</code>.
+     * @param payload Event payload, used for fields relative to the root of the payload.
+     * @return The value if found, <code>null</code> otherwise.
+     */
+    Object getValue(Map<String, Object> properties, BasePayload payload) {
+      Object value = root ? payload : properties;
+
+      for (String segment : path) {
+        if (!(value instanceof Map)) {
+          return null;
+        }
+
+        value = ((Map<?, ?>) value).get(segment);
+        if (value == null) {
+          return null;
+        }
+      }
+
+      return value;
+    }
+
+    /**
+     * Identifies if the field is a top level event property, i.e. its name is the property key.
+     *
+     * @return <code>true</code> if the field is a top level property, <code>false</code> otherwise.
+     */
+    boolean isProperty() {
+      return !root && path.length == 1;
+    }
+
+    /**
+     * Retrieves the field name as defined in the settings, which matches the property key for top
+     * level fields.
+     *
+     * @return Field name.
+     */
+    String getName() {
+      return name;
+    }
+
+    /**
+     * Retrieves the Adobe Analytics variable associated to the field.
+     *
+     * @return Variable name.
+     */
+    String getVariable() {
+      return variable;
+    }
+  }
 }
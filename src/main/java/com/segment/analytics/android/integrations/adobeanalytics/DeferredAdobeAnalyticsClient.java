@@ -0,0 +1,272 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.content.Context;
+import com.segment.analytics.integrations.Logger;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adobe Analytics client that initializes the Adobe SDK on a background thread, keeping it out of
+ * the app's cold start.
+ *
+ * <p>Calls made before {@link #start()} and while the SDK is being initialized are held in a
+ * bounded buffer. The background thread forwards them to the wrapped client in the same order they
+ * were made, starting with <code>setContext</code>, which is where the Adobe SDK loads its
+ * configuration. Once the buffer is empty, calls are forwarded directly on the caller's thread.
+ *
+ * <p>When the buffer is full the oldest tracking hit is discarded. Configuration and lifecycle
+ * calls are always kept, so hits are never sent with a stale context or user.
+ *
+ * <p>Context data maps are handed over to the background thread, callers must not modify them after
+ * tracking a hit.
+ *
+ * <p>Only calls to this client are held back. Other users of the Adobe SDK, such as the video
+ * heartbeat, must wait for the client to be ready, which a {@link #setReadyListener ready listener}
+ * reports. When the wrapped client dispatches calls asynchronously, being ready means the buffered
+ * calls have been handed over to it in order.
+ */
+class DeferredAdobeAnalyticsClient implements AdobeAnalyticsClient {
+
+  static final int DEFAULT_BUFFER_SIZE = 1000;
+
+  private static final String THREAD_NAME = "Segment-AdobeAnalytics-Init";
+
+  private final AdobeAnalyticsClient delegate;
+  private final int bufferSize;
+  private final Logger logger;
+  /** Calls waiting for the SDK to be initialized, guarded by <code>this</code>. */
+  private final ArrayDeque<ClientCommand> buffer;
+
+  private final CountDownLatch initialized = new CountDownLatch(1);
+  /** Set once every buffered call has been forwarded, calls are then made directly. */
+  private volatile boolean ready;
+
+  private boolean started;
+  private long droppedHits;
+  private Runnable readyListener;
+
+  DeferredAdobeAnalyticsClient(AdobeAnalyticsClient delegate, int bufferSize, Logger logger) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("bufferSize must be greater than zero.");
+    }
+
+    this.delegate = delegate;
+    this.bufferSize = bufferSize;
+    this.logger = logger;
+    this.buffer = new ArrayDeque<>();
+  }
+
+  /**
+   * Sets the task run once every buffered call has been forwarded. It runs on the background
+   * thread, and must be set before {@link #start()}.
+   *
+   * @param readyListener Task to run.
+   */
+  synchronized void setReadyListener(Runnable readyListener) {
+    this.readyListener = readyListener;
+  }
+
+  /**
+   * Starts initializing the Adobe SDK on a background thread, forwarding every buffered call. Does
+   * nothing if it has already been started.
+   */
+  synchronized void start() {
+    if (started) {
+      return;
+    }
+    started = true;
+
+    Thread initializer =
+        new Thread(THREAD_NAME) {
+          @Override
+          public void run() {
+            replay();
+          }
+        };
+    initializer.setDaemon(true);
+    initializer.start();
+  }
+
+  @Override
+  public void trackAction(String action, Map<String, Object> contextData) {
+    if (ready) {
+      delegate.trackAction(action, contextData);
+    } else {
+      defer(new ClientCommand(ClientCommand.TRACK_ACTION, action, contextData, null));
+    }
+  }
+
+  @Override
+  public void trackState(String state, Map<String, Object> contextData) {
+    if (ready) {
+      delegate.trackState(state, contextData);
+    } else {
+      defer(new ClientCommand(ClientCommand.TRACK_STATE, state, contextData, null));
+    }
+  }
+
+  @Override
+  public void setContext(Context context) {
+    if (ready) {
+      delegate.setContext(context);
+    } else {
+      defer(new ClientCommand(ClientCommand.SET_CONTEXT, null, null, context));
+    }
+  }
+
+  @Override
+  public void pauseCollectingLifecycleData() {
+    if (ready) {
+      delegate.pauseCollectingLifecycleData();
+    } else {
+      defer(new ClientCommand(ClientCommand.PAUSE_LIFECYCLE, null, null, null));
+    }
+  }
+
+  @Override
+  public void collectLifecycleData(Activity activity) {
+    if (ready) {
+      delegate.collectLifecycleData(activity);
+    } else {
+      defer(new ClientCommand(ClientCommand.COLLECT_LIFECYCLE, null, null, activity));
+    }
+  }
+
+  @Override
+  public void setUserIdentifier(String identifier) {
+    if (ready) {
+      delegate.setUserIdentifier(identifier);
+    } else {
+      defer(new ClientCommand(ClientCommand.SET_USER_IDENTIFIER, identifier, null, null));
+    }
+  }
+
+  @Override
+  public void setDebugLogging(Boolean debugLogging) {
+    if (ready) {
+      delegate.setDebugLogging(debugLogging);
+    } else {
+      defer(new ClientCommand(ClientCommand.SET_DEBUG_LOGGING, null, null, debugLogging));
+    }
+  }
+
+  /**
+   * Flushes the wrapped client. While the SDK is being initialized the flush is buffered like any
+   * other call instead of waiting for the initialization to finish.
+   */
+  @Override
+  public void flushQueue() {
+    if (ready) {
+      delegate.flushQueue();
+    } else {
+      defer(new ClientCommand(ClientCommand.FLUSH_QUEUE, null, null, null));
+    }
+  }
+
+  /**
+   * Waits for the Adobe SDK to be initialized and every buffered call to be forwarded.
+   *
+   * @param timeout Maximum time to wait.
+   * @param unit Unit of the timeout.
+   * @return <code>true</code> if the client is ready, <code>false</code> if the time elapsed.
+   * @throws InterruptedException If the current thread is interrupted while waiting.
+   */
+  boolean awaitInitialization(long timeout, TimeUnit unit) throws InterruptedException {
+    return initialized.await(timeout, unit);
+  }
+
+  boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * @return Number of tracking hits discarded because the buffer was full.
+   */
+  synchronized long getDroppedHits() {
+    return droppedHits;
+  }
+
+  private void defer(ClientCommand command) {
+    synchronized (this) {
+      if (!ready) {
+        if (buffer.size() >= bufferSize && !makeRoom(command)) {
+          return;
+        }
+        buffer.add(command);
+        return;
+      }
+    }
+    // The buffer was emptied while this call was waiting for the lock.
+    command.forward(delegate);
+  }
+
+  /**
+   * Discards a tracking hit so another call fits in the buffer.
+   *
+   * @param command Call that is being buffered.
+   * @return <code>true</code> if the call must be buffered, <code>false</code> if it was discarded.
+   */
+  private boolean makeRoom(ClientCommand command) {
+    Iterator<ClientCommand> iterator = buffer.iterator();
+    while (iterator.hasNext()) {
+      ClientCommand buffered = iterator.next();
+      if (buffered.isHit()) {
+        iterator.remove();
+        dropped(buffered);
+        return true;
+      }
+    }
+    if (command.isHit()) {
+      dropped(command);
+      return false;
+    }
+    // Only configuration calls are buffered, they are never discarded.
+    return true;
+  }
+
+  private void dropped(ClientCommand command) {
+    droppedHits++;
+    logger.verbose("Initialization buffer is full, dropped hit %s.", command.name);
+  }
+
+  /**
+   * Forwards the buffered calls in batches, so calls made meanwhile are only blocked while a batch
+   * is taken. Calls are made directly once the buffer is found empty.
+   */
+  private void replay() {
+    ArrayDeque<ClientCommand> batch = new ArrayDeque<>();
+    while (true) {
+      synchronized (this) {
+        if (buffer.isEmpty()) {
+          ready = true;
+          break;
+        }
+        batch.addAll(buffer);
+        buffer.clear();
+      }
+
+      ClientCommand command;
+      while ((command = batch.poll()) != null) {
+        try {
+          command.forward(delegate);
+        } catch (RuntimeException e) {
+          logger.error(e, "Adobe Analytics call failed.");
+        }
+      }
+    }
+    initialized.countDown();
+    logger.verbose("Adobe Analytics initialized.");
+
+    Runnable listener;
+    synchronized (this) {
+      listener = readyListener;
+    }
+    if (listener != null) {
+      listener.run();
+    }
+  }
+}
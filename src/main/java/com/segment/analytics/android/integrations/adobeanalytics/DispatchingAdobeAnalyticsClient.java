@@ -0,0 +1,238 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.content.Context;
+
+import com.segment.analytics.integrations.Logger;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adobe Analytics client that moves calls off the caller's thread. Calls are added to a bounded
+ * queue and forwarded to the wrapped client by a single worker thread, in the same order they were
+ * made.
+ *
+ * <p>Only tracking hits are subject to the {@link AdobeIntegration.OverflowPolicy}: configuration
+ * and lifecycle calls always wait for room in the queue, so hits are never sent with a stale
+ * context or user.
+ *
+ * <p>Context data maps are handed over to the worker thread, callers must not modify them after
+ * tracking a hit.
+ *
+ * <p>Calls made after {@link #shutdown()} are ignored. The check and the queueing are made under
+ * the same lock, so no call is queued behind the worker thread once it stopped.
+ */
+class DispatchingAdobeAnalyticsClient implements AdobeAnalyticsClient {
+
+  static final int DEFAULT_QUEUE_SIZE = 1000;
+  static final AdobeIntegration.OverflowPolicy DEFAULT_OVERFLOW_POLICY =
+      AdobeIntegration.OverflowPolicy.DROP_OLDEST;
+
+  private static final String THREAD_NAME = "Segment-AdobeAnalytics-Dispatcher";
+
+  private static final int SHUTDOWN = -1;
+
+  private final AdobeAnalyticsClient delegate;
+  private final BlockingQueue<ClientCommand> queue;
+  private final AdobeIntegration.OverflowPolicy overflowPolicy;
+  private final Logger logger;
+  private final Thread worker;
+  private final AtomicLong droppedHits = new AtomicLong();
+  private final Object lock = new Object();
+  // Guarded by lock.
+  private boolean shutdown;
+
+  DispatchingAdobeAnalyticsClient(
+      AdobeAnalyticsClient delegate,
+      int queueSize,
+      AdobeIntegration.OverflowPolicy overflowPolicy,
+      Logger logger) {
+    if (queueSize <= 0) {
+      throw new IllegalArgumentException("queueSize must be greater than zero.");
+    }
+
+    this.delegate = delegate;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.overflowPolicy = overflowPolicy;
+    this.logger = logger;
+
+    worker =
+        new Thread(THREAD_NAME) {
+          @Override
+          public void run() {
+            dispatch();
+          }
+        };
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  @Override
+  public void trackAction(String action, Map<String, Object> contextData) {
+    offer(new ClientCommand(ClientCommand.TRACK_ACTION, action, contextData, null));
+  }
+
+  @Override
+  public void trackState(String state, Map<String, Object> contextData) {
+    offer(new ClientCommand(ClientCommand.TRACK_STATE, state, contextData, null));
+  }
+
+  @Override
+  public void setContext(Context context) {
+    put(new ClientCommand(ClientCommand.SET_CONTEXT, null, null, context));
+  }
+
+  @Override
+  public void pauseCollectingLifecycleData() {
+    put(new ClientCommand(ClientCommand.PAUSE_LIFECYCLE, null, null, null));
+  }
+
+  @Override
+  public void collectLifecycleData(Activity activity) {
+    put(new ClientCommand(ClientCommand.COLLECT_LIFECYCLE, null, null, activity));
+  }
+
+  @Override
+  public void setUserIdentifier(String identifier) {
+    put(new ClientCommand(ClientCommand.SET_USER_IDENTIFIER, identifier, null, null));
+  }
+
+  @Override
+  public void setDebugLogging(Boolean debugLogging) {
+    put(new ClientCommand(ClientCommand.SET_DEBUG_LOGGING, null, null, debugLogging));
+  }
+
+  /**
+   * Flushes the wrapped client once all the calls made before this one have been forwarded. Returns
+   * without waiting for the flush, as the caller is Segment's main thread.
+   */
+  @Override
+  public void flushQueue() {
+    put(new ClientCommand(ClientCommand.FLUSH_QUEUE, null, null, null));
+  }
+
+  /**
+   * Stops the worker thread once all the calls made before this one have been forwarded. Calls made
+   * afterwards are ignored.
+   */
+  void shutdown() {
+    synchronized (lock) {
+      if (shutdown) {
+        return;
+      }
+      shutdown = true;
+      enqueue(new ClientCommand(SHUTDOWN, null, null, null));
+    }
+  }
+
+  /**
+   * @return Number of tracking hits discarded because the queue was full.
+   */
+  long getDroppedHits() {
+    return droppedHits.get();
+  }
+
+  private void offer(ClientCommand command) {
+    synchronized (lock) {
+      if (shutdown) {
+        return;
+      }
+
+      switch (overflowPolicy) {
+        case BLOCK:
+          enqueue(command);
+          return;
+        case DROP_NEWEST:
+          if (!queue.offer(command)) {
+            dropped(command);
+          }
+          return;
+        case DROP_OLDEST:
+          while (!queue.offer(command)) {
+            ClientCommand oldest = removeOldestHit();
+            if (oldest == null) {
+              // Only configuration calls are queued, wait for them to be forwarded.
+              enqueue(command);
+              return;
+            }
+            dropped(oldest);
+          }
+          return;
+        default:
+          throw new AssertionError("Unknown overflow policy: " + overflowPolicy);
+      }
+    }
+  }
+
+  private ClientCommand removeOldestHit() {
+    Iterator<ClientCommand> iterator = queue.iterator();
+    while (iterator.hasNext()) {
+      ClientCommand command = iterator.next();
+      if (command.isHit()) {
+        iterator.remove();
+        return command;
+      }
+    }
+    return null;
+  }
+
+  private void dropped(ClientCommand command) {
+    droppedHits.incrementAndGet();
+    logger.verbose("Dispatch queue is full, dropped hit %s.", command.name);
+  }
+
+  private void put(ClientCommand command) {
+    synchronized (lock) {
+      if (!shutdown) {
+        enqueue(command);
+      }
+    }
+  }
+
+  /**
+   * Waits for room in the queue. The worker thread never takes the lock, so holding it only delays
+   * the other callers.
+   */
+  private void enqueue(ClientCommand command) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          queue.put(command);
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void dispatch() {
+    while (true) {
+      ClientCommand command;
+      try {
+        command = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      if (command.type == SHUTDOWN) {
+        return;
+      }
+
+      try {
+        command.forward(delegate);
+      } catch (RuntimeException e) {
+        logger.error(e, "Adobe Analytics call failed.");
+      }
+    }
+  }
+}
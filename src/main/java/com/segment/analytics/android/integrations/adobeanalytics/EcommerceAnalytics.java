@@ -6,12 +6,12 @@ import com.segment.analytics.integrations.BasePayload;
 import com.segment.analytics.integrations.Logger;
 import com.segment.analytics.integrations.TrackPayload;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Generate events for all ecommerce actions.
@@ -69,13 +69,10 @@ public class EcommerceAnalytics {
      * Retrieves the event using Segment's ecommerce event name.
      *
      * @param name Segment's ecommerce event name.
-     * @return The event.
+     * @return The event, or <code>null</code> if it is not an ecommerce event.
      */
     static Event get(String name) {
-      if (names.containsKey(name)) {
-        return names.get(name);
-      }
-      throw new IllegalArgumentException(name + " is not a valid ecommerce event");
+      return names.get(name);
     }
 
     /**
@@ -89,118 +86,163 @@ public class EcommerceAnalytics {
     }
   }
 
+  /** Properties reserved by events that contain a list of products. */
+  private static final Set<String> PRODUCTS_RESERVED_KEYS =
+      new HashSet<>(Arrays.asList("products", "orderId", "order_id"));
+
   private AdobeAnalyticsClient adobeAnalytics;
   private Logger logger;
-  private ContextDataConfiguration contextDataConfiguration;
-  private String productIdentifier;
+  /** Configuration of events tracked directly, the integration passes its own with each event. */
+  private volatile AdobeConfiguration configuration;
 
   EcommerceAnalytics(
       AdobeAnalyticsClient adobeAnalytics,
       String productIdentifier,
       ContextDataConfiguration contextDataConfiguration,
       Logger logger) {
+    this(
+        adobeAnalytics,
+        new AdobeConfiguration(null, contextDataConfiguration, productIdentifier),
+        logger);
+  }
+
+  EcommerceAnalytics(
+      AdobeAnalyticsClient adobeAnalytics, AdobeConfiguration configuration, Logger logger) {
     this.adobeAnalytics = adobeAnalytics;
     this.logger = logger;
-    this.contextDataConfiguration = contextDataConfiguration;
-    this.productIdentifier = productIdentifier;
+    this.configuration = configuration;
   }
 
   void track(TrackPayload payload) {
     EcommerceAnalytics.Event event = EcommerceAnalytics.Event.get(payload.event());
+    if (event == null) {
+      logger.verbose("%s is not a valid ecommerce event.", payload.event());
+      return;
+    }
+    track(payload, event);
+  }
+
+  /**
+   * Tracks an ecommerce event that has already been resolved from the event name.
+   *
+   * @param payload Event payload.
+   * @param event Ecommerce event.
+   */
+  void track(TrackPayload payload, EcommerceAnalytics.Event event) {
+    track(payload, event, configuration);
+  }
+
+  /**
+   * Tracks an ecommerce event using a configuration snapshot, which is used for the whole event.
+   *
+   * @param payload Event payload.
+   * @param event Ecommerce event.
+   * @param configuration Configuration snapshot.
+   */
+  void track(
+      TrackPayload payload, EcommerceAnalytics.Event event, AdobeConfiguration configuration) {
     String eventName = event.getAdobeAnalyticsEvent();
 
-    Map<String, Object> cdata = getContextData(eventName, payload);
+    Map<String, Object> cdata = getContextData(eventName, payload, configuration);
 
     adobeAnalytics.trackAction(eventName, cdata);
     logger.verbose("Analytics.trackAction(%s, %s);", eventName, cdata);
   }
 
-  private Map<String, Object> getContextData(String eventName, BasePayload payload) {
+  private Map<String, Object> getContextData(
+      String eventName, BasePayload payload, AdobeConfiguration configuration) {
 
     Map<String, Object> contextData = new HashMap<>();
     contextData.put("&&events", eventName);
 
-    Properties extraProperties = new Properties();
-    ValueMap properties;
-    if (payload.containsKey("properties")) {
-      properties = payload.getValueMap("properties");
-      extraProperties.putAll(properties);
-    } else {
+    ValueMap properties = payload.getValueMap("properties");
+    if (properties == null) {
       properties = new Properties();
     }
 
-    Products products;
-    if (properties.containsKey("products")
-        && properties.getList("products", Properties.Product.class).size() > 0) {
-      products = new Products(properties.getList("products", Properties.Product.class));
-      extraProperties.remove("products");
+    Object eventProducts = properties.get("products");
+    String products;
+    Set<String> reservedKeys;
+    if (ProductsWriter.isProductList(eventProducts)) {
+      products = getProducts((List<?>) eventProducts, configuration.getProductsWriter());
+      reservedKeys = PRODUCTS_RESERVED_KEYS;
     } else {
-      List<String> propertiesToRemove = new LinkedList<>();
-      propertiesToRemove.add("category");
-      propertiesToRemove.add("quantity");
-      propertiesToRemove.add("price");
-      products = new Products(properties);
-
-      String idKey = productIdentifier;
-      if (idKey == null || idKey.equals("id")) {
-        propertiesToRemove.add("productId");
-        propertiesToRemove.add("product_id");
-      } else {
-        propertiesToRemove.add(idKey);
-      }
-
-      for (String key : propertiesToRemove) {
-        extraProperties.remove(key);
-      }
+      products = getProduct(properties, configuration.getProductsWriter());
+      reservedKeys = configuration.getProductReservedKeys();
     }
 
-    if (!products.isEmpty()) {
-      contextData.put("&&products", products.toString());
+    if (products != null) {
+      contextData.put("&&products", products);
     }
 
     if (properties.containsKey("orderId")) {
       contextData.put("purchaseid", properties.getString("orderId"));
-      extraProperties.remove("orderId");
     }
 
     if (properties.containsKey("order_id")) {
       contextData.put("purchaseid", properties.getString("order_id"));
-      extraProperties.remove("order_id");
     }
 
-    // add all customer-mapped properties to ecommerce context data map
-    for (String field : contextDataConfiguration.getEventFieldNames()) {
+    // add all customer-mapped properties and extra properties to ecommerce context data map
+    ContextDataBuilder.build(
+        configuration.getContextDataConfiguration(),
+        payload,
+        properties,
+        reservedKeys,
+        ContextDataBuilder.Format.MAPPED_AS_STRING,
+        contextData);
 
-      Object value = null;
-      try {
-        value = contextDataConfiguration.searchValue(field, payload);
-      } catch (IllegalArgumentException e) {
-        // Ignore.
-      }
-
-      if (value != null) {
-        String variable = contextDataConfiguration.getVariableName(field);
-        contextData.put(variable, String.valueOf(value));
-        extraProperties.remove(field);
-      }
+    // If we only have events, we return null;
+    if (contextData.size() == 1) {
+      return null;
     }
 
-    // Add extra properties.
-    for (String extraProperty : extraProperties.keySet()) {
-      String variable = contextDataConfiguration.getPrefix() + extraProperty;
-      contextData.put(variable, extraProperties.get(extraProperty));
+    return contextData;
+  }
+
+  /**
+   * Builds the <code>&&products</code> variable out of a list of products.
+   *
+   * @param eventProducts Products as defined in the event.
+   * @param productsWriter Writer of the configured product identifier.
+   * @return The products, or <code>null</code> if no product has an ID.
+   */
+  private String getProducts(List<?> eventProducts, ProductsWriter productsWriter) {
+    StringBuilder builder = ProductsWriter.newBuffer(eventProducts.size());
+    for (Object eventProduct : eventProducts) {
+      if (eventProduct instanceof Map
+          && !productsWriter.append(builder, (Map<?, ?>) eventProduct)) {
+        logMissingProductId();
+      }
     }
+    return builder.length() > 0 ? builder.toString() : null;
+  }
 
-    // If we only have events, we return null;
-    if (contextData.size() == 1) {
+  /**
+   * Builds the <code>&&products</code> variable out of an event that describes a single product.
+   *
+   * @param eventProperties Event properties.
+   * @param productsWriter Writer of the configured product identifier.
+   * @return The product, or <code>null</code> if it does not have an ID.
+   */
+  private String getProduct(ValueMap eventProperties, ProductsWriter productsWriter) {
+    StringBuilder builder = ProductsWriter.newBuffer(1);
+    if (!productsWriter.append(builder, eventProperties)) {
+      logMissingProductId();
       return null;
     }
+    return builder.toString();
+  }
 
-    return contextData;
+  private void logMissingProductId() {
+    // We ignore the product
+    logger.verbose(
+        "You must provide a name for each product to pass an ecommerce event"
+            + "to Adobe Analytics.");
   }
 
   String getProductIdentifier() {
-    return productIdentifier;
+    return configuration.getProductIdentifier();
   }
 
   /**
@@ -209,11 +251,11 @@ public class EcommerceAnalytics {
    * @param productIdentifier Field that represents the product id.
    */
   void setProductIdentifier(String productIdentifier) {
-    this.productIdentifier = productIdentifier;
+    configuration = configuration.withProductIdentifier(productIdentifier);
   }
 
   ContextDataConfiguration getContextDataConfiguration() {
-    return contextDataConfiguration;
+    return configuration.getContextDataConfiguration();
   }
 
   /**
@@ -222,191 +264,6 @@ public class EcommerceAnalytics {
    * @param contextDataConfiguration New context data configuration.
    */
   void setContextDataConfiguration(ContextDataConfiguration contextDataConfiguration) {
-    this.contextDataConfiguration = contextDataConfiguration;
-  }
-
-  /** Defines a Adobe Analytics ecommerce product. */
-  class Product {
-
-    private String category;
-    private String id;
-    private Integer quantity;
-    private Double price;
-
-    /**
-     * Creates a product.
-     *
-     * @param eventProduct Product as defined in the event.
-     */
-    Product(ValueMap eventProduct) {
-
-      this.setProductId(eventProduct);
-      this.category = eventProduct.getString("category");
-
-      // Default to 1.
-      this.quantity = 1;
-      String q = eventProduct.getString("quantity");
-      if (q != null) {
-        try {
-          this.quantity = Integer.parseInt(q);
-        } catch (NumberFormatException e) {
-          // Default.
-        }
-      }
-
-      // Default to 0.
-      this.price = 0.0;
-      String p = eventProduct.getString("price");
-      if (p != null) {
-        try {
-          this.price = Double.parseDouble(p);
-        } catch (NumberFormatException e) {
-          // Default.
-        }
-      }
-
-      this.price = price * quantity;
-    }
-
-    /**
-     * Sets the product ID using productIdentifier setting if present (supported values are <code>
-     * name</code>, <code>sku</code> and <code>id</code>. If the field is not present, it fallbacks
-     * to "productId" and "id".
-     *
-     * <p>Currently we do not allow to have products without IDs. Adobe Analytics allows to send an
-     * extra product for merchandising evars and event serialization, as seen in the last example of
-     * the <a
-     * href="https://marketing.adobe.com/resources/help/en_US/sc/implement/products.html">docs</a>,
-     * but it is not well documented and does not conform Segment's spec.
-     *
-     * <p><b>NOTE: V2 Ecommerce spec defines "product_id" instead of "id". We fallback to "id" to
-     * keep backwards compatibility.</b>
-     *
-     * @param eventProduct Event's product.
-     * @throws IllegalArgumentException if the product does not have an ID.
-     */
-    private void setProductId(ValueMap eventProduct) {
-      if (productIdentifier != null) {
-        // When productIdentifier is "id" use the default behavior.
-        if (!productIdentifier.equals("id")) {
-          id = eventProduct.getString(productIdentifier);
-        }
-      }
-
-      // Fallback to "productId" as V2 ecommerce spec
-      if (id == null || id.trim().length() == 0) {
-        id = eventProduct.getString("productId");
-      }
-
-      // Fallback to "product_id" as V2 ecommerce spec
-      if (id == null || id.trim().length() == 0) {
-        id = eventProduct.getString("product_id");
-      }
-
-      // Fallback to "id" as V1 ecommerce spec
-      if (id == null || id.trim().length() == 0) {
-        id = eventProduct.getString("id");
-      }
-
-      if (id == null || id.trim().length() == 0) {
-        throw new IllegalArgumentException("Product id is not defined.");
-      }
-    }
-
-    /**
-     * Builds a string out of product properties category, name, quantity and price to send to
-     * Adobe.
-     *
-     * @return A single string of product properties, in the format `category;name;quantity;price;
-     *     examples: `athletic;shoes;1;10.0`, `;shoes;1;0.0`, `;123;;`
-     */
-    @Override
-    public String toString() {
-      StringBuilder builder = new StringBuilder();
-
-      // Category
-      if (category != null && category.trim().length() > 0) {
-        builder.append(category);
-      }
-      builder.append(";");
-
-      // Id
-      if (id != null && id.trim().length() > 0) {
-        builder.append(id);
-      }
-      builder.append(";");
-
-      // Quantity
-      if (quantity != null) {
-        builder.append(quantity.intValue());
-      }
-      builder.append(";");
-
-      // Price
-      if (price != null) {
-        builder.append(price.doubleValue());
-      }
-
-      return builder.toString();
-    }
-  }
-
-  /** Defines an array of products. */
-  class Products {
-
-    private List<Product> products;
-
-    Products(List<Properties.Product> eventProducts) {
-      products = new ArrayList<>(eventProducts.size());
-
-      for (Properties.Product eventProduct : eventProducts) {
-        try {
-          products.add(new Product(eventProduct));
-        } catch (IllegalArgumentException e) {
-          // We ignore the product
-          logger.verbose(
-              "You must provide a name for each product to pass an ecommerce event"
-                  + "to Adobe Analytics.");
-        }
-      }
-    }
-
-    Products(ValueMap eventProperties) {
-      products = new ArrayList<>(1);
-
-      try {
-        products.add(new Product(eventProperties));
-      } catch (IllegalArgumentException e) {
-        // We ignore the product
-        logger.verbose(
-            "You must provide a name for each product to pass an ecommerce event"
-                + "to Adobe Analytics.");
-      }
-    }
-
-    boolean isEmpty() {
-      return products.isEmpty();
-    }
-
-    /**
-     * Builds a string out of product properties category, name, quantity and price to send to
-     * Adobe.
-     *
-     * @return A single string of product properties, in the format `category;name;quantity;price;
-     *     examples: `athletic;shoes;1;10.0`, `;shoes;1;0.0`
-     */
-    @Override
-    public String toString() {
-      StringBuilder builder = new StringBuilder();
-
-      for (int i = 0; i < products.size(); i++) {
-        builder.append(products.get(i).toString());
-        if (i < (products.size() - 1)) {
-          builder.append(',');
-        }
-      }
-
-      return builder.toString();
-    }
+    configuration = configuration.withContextDataConfiguration(contextDataConfiguration);
   }
 }
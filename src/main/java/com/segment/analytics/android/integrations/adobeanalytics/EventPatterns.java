@@ -0,0 +1,220 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Event mapping rules that contain wildcards, such as <code>Article Read - *</code> or <code>
+ * Video * Shared</code>. A <code>*</code> matches any sequence of characters, including an empty
+ * one.
+ *
+ * <p>All rules are compiled into a single trie where each wildcard is a node that loops on itself.
+ * An event name is matched by walking the trie once, character by character, following every branch
+ * the name is still on. The cost depends on the length of the name and on how many wildcards it is
+ * inside of, not on the number of rules. When several rules match, the one with the most literal
+ * characters wins, then the smallest rule in lexicographic order.
+ */
+final class EventPatterns {
+
+  private static final char WILDCARD = '*';
+
+  private final Node root = new Node(false);
+  private int size;
+
+  /**
+   * Identifies if an event mapping rule contains wildcards.
+   *
+   * @param rule Segment event name or rule.
+   * @return <code>true</code> if it is a rule, <code>false</code> if it is an exact name.
+   */
+  static boolean isPattern(String rule) {
+    return rule.indexOf(WILDCARD) >= 0;
+  }
+
+  /**
+   * Adds a rule. Only used while settings are loaded.
+   *
+   * @param rule Rule, see {@link #isPattern(String)}.
+   * @param route Route of the events that match the rule.
+   */
+  void add(String rule, EventRoutes.Route route) {
+    Node node = root;
+    int literals = 0;
+    for (int i = 0; i < rule.length(); i++) {
+      char c = rule.charAt(i);
+      if (c == WILDCARD) {
+        // Consecutive wildcards match the same as a single one.
+        if (!node.wildcard) {
+          if (node.star == null) {
+            node.star = new Node(true);
+          }
+          node = node.star;
+        }
+      } else {
+        node = node.add(c);
+        literals++;
+      }
+    }
+
+    if (node.rule == null) {
+      size++;
+    } else if (!wins(rule, literals, node.rule, node.literals)) {
+      return;
+    }
+    node.rule = rule;
+    node.literals = literals;
+    node.route = route;
+  }
+
+  /**
+   * Finds the rule that matches an event name.
+   *
+   * @param event Segment event name.
+   * @return The route of the best matching rule, or <code>null</code> if no rule matches.
+   */
+  EventRoutes.Route match(String event) {
+    Node[] active = new Node[4];
+    int count = enter(active, 0, root);
+    Node[] next = new Node[active.length];
+
+    for (int i = 0; i < event.length() && count > 0; i++) {
+      char c = event.charAt(i);
+      int nextCount = 0;
+      for (int j = 0; j < count; j++) {
+        Node node = active[j];
+        if (node.wildcard) {
+          next = grow(next, nextCount);
+          nextCount = enter(next, nextCount, node);
+        }
+        Node child = node.get(c);
+        if (child != null) {
+          next = grow(next, nextCount);
+          nextCount = enter(next, nextCount, child);
+        }
+      }
+
+      Node[] swap = active;
+      active = next;
+      next = swap.length >= active.length ? swap : new Node[active.length];
+      count = nextCount;
+    }
+
+    Node best = null;
+    for (int j = 0; j < count; j++) {
+      Node node = active[j];
+      if (node.rule != null
+          && (best == null || wins(node.rule, node.literals, best.rule, best.literals))) {
+        best = node;
+      }
+    }
+    return best != null ? best.route : null;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Adds every rule into a map.
+   *
+   * @param eventsMapping Map where rules are added as <code>{rule, adobe analytics event}</code>.
+   */
+  void collect(Map<String, String> eventsMapping) {
+    collect(root, eventsMapping);
+  }
+
+  private static void collect(Node node, Map<String, String> eventsMapping) {
+    if (node.rule != null) {
+      eventsMapping.put(node.rule, node.route.action);
+    }
+    for (int i = 0; i < node.size; i++) {
+      collect(node.children[i], eventsMapping);
+    }
+    if (node.star != null) {
+      collect(node.star, eventsMapping);
+    }
+  }
+
+  private static boolean wins(String rule, int literals, String other, int otherLiterals) {
+    if (literals != otherLiterals) {
+      return literals > otherLiterals;
+    }
+    return rule.compareTo(other) < 0;
+  }
+
+  /**
+   * Adds a node to the active nodes, followed by its wildcard, which also matches an empty
+   * sequence. Nodes that are already active are not added twice.
+   *
+   * @return The new number of active nodes.
+   */
+  private static int enter(Node[] active, int count, Node node) {
+    for (int i = 0; i < count; i++) {
+      if (active[i] == node) {
+        return count;
+      }
+    }
+    active[count++] = node;
+    if (node.star != null) {
+      count = enter(active, count, node.star);
+    }
+    return count;
+  }
+
+  /** Makes room for a node and its wildcard. */
+  private static Node[] grow(Node[] active, int count) {
+    if (count + 2 <= active.length) {
+      return active;
+    }
+    return Arrays.copyOf(active, active.length * 2);
+  }
+
+  /** State of the trie. Children are kept sorted by character. */
+  private static final class Node {
+
+    /** Whether the node is a wildcard, which loops on itself on any character. */
+    final boolean wildcard;
+
+    char[] labels = new char[0];
+    Node[] children = new Node[0];
+    int size;
+    /** Wildcard that follows this node, if any rule has one here. */
+    Node star;
+
+    /** Rule that ends at this node, if any. */
+    String rule;
+    /** Number of characters of the rule besides wildcards. */
+    int literals;
+    /** Route of the events that match the rule. */
+    EventRoutes.Route route;
+
+    Node(boolean wildcard) {
+      this.wildcard = wildcard;
+    }
+
+    Node get(char c) {
+      int i = Arrays.binarySearch(labels, 0, size, c);
+      return i >= 0 ? children[i] : null;
+    }
+
+    Node add(char c) {
+      int i = Arrays.binarySearch(labels, 0, size, c);
+      if (i >= 0) {
+        return children[i];
+      }
+
+      i = -i - 1;
+      if (size == labels.length) {
+        labels = Arrays.copyOf(labels, Math.max(2, size * 2));
+        children = Arrays.copyOf(children, labels.length);
+      }
+      System.arraycopy(labels, i, labels, i + 1, size - i);
+      System.arraycopy(children, i, children, i + 1, size - i);
+      Node child = new Node(false);
+      labels[i] = c;
+      children[i] = child;
+      size++;
+      return child;
+    }
+  }
+}
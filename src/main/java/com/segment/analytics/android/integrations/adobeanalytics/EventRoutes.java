@@ -0,0 +1,212 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves how each tracked event is sent to Adobe Analytics. Every known event name is resolved
+ * once, when settings are loaded, so routing an event only needs a single lookup.
+ *
+ * <p>The table holds every event that is sent to Adobe, which makes a missing entry a definitive
+ * answer: the event is not configured and must be dropped. Unmapped events are therefore not
+ * stored, and arbitrary event names do not make the table grow.
+ *
+ * <p>Workspaces may map thousands of events, so the table is stored as two parallel arrays with
+ * open addressing instead of a hash map, built straight from the settings without an intermediate
+ * copy. There are no per-entry nodes, but each mapped event name has its own route. Video and
+ * ecommerce events share one route per event across every table.
+ *
+ * <p>Event names that contain wildcards are compiled into {@link EventPatterns}. Exact names, and
+ * ecommerce and video events, always take precedence over rules. The route an event name resolves
+ * to through rules is memoized, so rules are only evaluated the first time a name is seen.
+ */
+final class EventRoutes {
+
+  /** Destination of a tracked event. */
+  enum Type {
+    /** Sent to the video heartbeat. */
+    VIDEO,
+    /** Sent as an Adobe ecommerce action. */
+    ECOMMERCE,
+    /** Sent as the custom Adobe action configured in the events mapping. */
+    ACTION,
+    /** Ecommerce event mapped to a custom action, which is not supported. */
+    MAPPED_ECOMMERCE
+  }
+
+  /** Resolved route of an event. */
+  static final class Route {
+
+    final Type type;
+    final VideoAnalytics.Event videoEvent;
+    final EcommerceAnalytics.Event ecommerceEvent;
+    final String action;
+
+    Route(
+        Type type,
+        VideoAnalytics.Event videoEvent,
+        EcommerceAnalytics.Event ecommerceEvent,
+        String action) {
+      this.type = type;
+      this.videoEvent = videoEvent;
+      this.ecommerceEvent = ecommerceEvent;
+      this.action = action;
+    }
+  }
+
+  /** Maximum number of event names whose rule matching is memoized. */
+  static final int MAX_MATCHES = 1024;
+
+  /** Memoized result of event names that do not match any rule. */
+  private static final Route NO_MATCH = new Route(null, null, null, null);
+
+  private static final Route[] VIDEO_ROUTES;
+  private static final Route[] ECOMMERCE_ROUTES;
+
+  static {
+    VideoAnalytics.Event[] videoEvents = VideoAnalytics.Event.values();
+    VIDEO_ROUTES = new Route[videoEvents.length];
+    for (VideoAnalytics.Event event : videoEvents) {
+      VIDEO_ROUTES[event.ordinal()] = new Route(Type.VIDEO, event, null, null);
+    }
+
+    EcommerceAnalytics.Event[] ecommerceEvents = EcommerceAnalytics.Event.values();
+    ECOMMERCE_ROUTES = new Route[ecommerceEvents.length];
+    for (EcommerceAnalytics.Event event : ecommerceEvents) {
+      ECOMMERCE_ROUTES[event.ordinal()] = new Route(Type.ECOMMERCE, null, event, null);
+    }
+  }
+
+  private final String[] names;
+  private final Route[] routes;
+  private final int mask;
+  /** Rules with wildcards, <code>null</code> if the mapping does not define any. */
+  private final EventPatterns patterns;
+  /** Event names resolved through {@link #patterns}. */
+  private final ConcurrentHashMap<String, Route> matches;
+
+  /**
+   * Builds the routing table.
+   *
+   * @param eventsMapping Events mapping as <code>{segment event, adobe analytics event}</code>, may
+   *     be <code>null</code>. It is not referenced once the table is built.
+   */
+  EventRoutes(Map<String, ?> eventsMapping) {
+    int count = EcommerceAnalytics.Event.values().length + VideoAnalytics.Event.values().length;
+    if (eventsMapping != null) {
+      count += eventsMapping.size();
+    }
+    // Half of the slots stay empty, which keeps probe sequences short.
+    int capacity = Integer.highestOneBit(count * 2 - 1) << 1;
+    names = new String[capacity];
+    routes = new Route[capacity];
+    mask = capacity - 1;
+
+    EventPatterns patterns = new EventPatterns();
+    if (eventsMapping != null) {
+      for (Map.Entry<String, ?> entry : eventsMapping.entrySet()) {
+        String name = entry.getKey();
+        if (name == null) {
+          continue;
+        }
+
+        Route route = new Route(Type.ACTION, null, null, String.valueOf(entry.getValue()));
+        if (EventPatterns.isPattern(name)) {
+          patterns.add(name, route);
+        } else {
+          put(name, route);
+        }
+      }
+    }
+    this.patterns = patterns.size() > 0 ? patterns : null;
+    this.matches = patterns.size() > 0 ? new ConcurrentHashMap<String, Route>() : null;
+
+    for (EcommerceAnalytics.Event event : EcommerceAnalytics.Event.values()) {
+      String name = event.getSegmentEvent();
+      // Only exact names map ecommerce events, rules never apply to them.
+      Route mapped = routes[slot(name)];
+      if (mapped != null) {
+        put(name, new Route(Type.MAPPED_ECOMMERCE, null, event, mapped.action));
+      } else {
+        put(name, ECOMMERCE_ROUTES[event.ordinal()]);
+      }
+    }
+
+    // Video events take precedence over any other route.
+    for (VideoAnalytics.Event event : VideoAnalytics.Event.values()) {
+      put(event.getName(), VIDEO_ROUTES[event.ordinal()]);
+    }
+  }
+
+  /**
+   * Retrieves the route of an event.
+   *
+   * @param event Segment event name.
+   * @return The route, or <code>null</code> if the event must be dropped.
+   */
+  Route get(String event) {
+    if (event == null) {
+      return null;
+    }
+
+    Route route = routes[slot(event)];
+    if (route != null || patterns == null) {
+      return route;
+    }
+
+    route = matches.get(event);
+    if (route == null) {
+      route = patterns.match(event);
+      if (route == null) {
+        route = NO_MATCH;
+      }
+      // Arbitrary event names must not make the memo grow without bounds.
+      if (matches.size() >= MAX_MATCHES) {
+        matches.clear();
+      }
+      matches.put(event, route);
+    }
+    return route != NO_MATCH ? route : null;
+  }
+
+  /**
+   * Rebuilds the events mapping the table was built from. Allocates a new map, only used for
+   * testing.
+   *
+   * @return Events mapping as <code>{segment event, adobe analytics event}</code>.
+   */
+  Map<String, String> getEventsMapping() {
+    Map<String, String> eventsMapping = new HashMap<>();
+    for (int i = 0; i < routes.length; i++) {
+      if (routes[i] != null && routes[i].action != null) {
+        eventsMapping.put(names[i], routes[i].action);
+      }
+    }
+    if (patterns != null) {
+      patterns.collect(eventsMapping);
+    }
+    return eventsMapping;
+  }
+
+  private void put(String name, Route route) {
+    int slot = slot(name);
+    names[slot] = name;
+    routes[slot] = route;
+  }
+
+  /**
+   * Finds the slot of an event name with linear probing.
+   *
+   * @param name Event name.
+   * @return The slot that holds the name, or the empty slot where it belongs.
+   */
+  private int slot(String name) {
+    int hash = name.hashCode();
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (names[slot] != null && !names[slot].equals(name)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+}
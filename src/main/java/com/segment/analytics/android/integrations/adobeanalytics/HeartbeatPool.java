@@ -0,0 +1,201 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.adobe.primetime.va.simple.MediaHeartbeat;
+import com.adobe.primetime.va.simple.MediaHeartbeatConfig;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the heartbeats of ended video sessions so new sessions can reuse them instead of building a
+ * new heartbeat, which dominates the time to the first heartbeat. A heartbeat is only reused by a
+ * session with the same configuration, and together with its playhead, which is reset.
+ *
+ * <p>The configurations themselves are cached too, keyed by the event values they are built from.
+ * Both caches are bounded. Only used from the thread that tracks video events.
+ */
+final class HeartbeatPool {
+
+  /** Default number of idle heartbeats kept for reuse. */
+  static final int DEFAULT_MAX_SIZE = 4;
+
+  /** Default number of cached configurations. */
+  static final int MAX_CONFIGS = 16;
+
+  private final String trackingServer;
+  private final String appVersion;
+  private final int maxSize;
+  private final int maxConfigs;
+  /** Idle heartbeats, the most recently released first. */
+  private final ArrayDeque<Entry> idle;
+
+  private final LinkedHashMap<Key, MediaHeartbeatConfig> configs =
+      new LinkedHashMap<Key, MediaHeartbeatConfig>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, MediaHeartbeatConfig> eldest) {
+          return size() > maxConfigs;
+        }
+      };
+
+  /**
+   * Creates a heartbeat pool.
+   *
+   * @param trackingServer Heartbeat tracking server of every configuration.
+   * @param appVersion App version of every configuration.
+   * @param maxSize Maximum number of idle heartbeats, <code>0</code> disables reuse.
+   */
+  HeartbeatPool(String trackingServer, String appVersion, int maxSize) {
+    this(trackingServer, appVersion, maxSize, MAX_CONFIGS);
+  }
+
+  /**
+   * Creates a heartbeat pool.
+   *
+   * @param trackingServer Heartbeat tracking server of every configuration.
+   * @param appVersion App version of every configuration.
+   * @param maxSize Maximum number of idle heartbeats, <code>0</code> disables reuse.
+   * @param maxConfigs Maximum number of cached configurations, <code>0</code> builds a new one for
+   *     every heartbeat.
+   */
+  HeartbeatPool(String trackingServer, String appVersion, int maxSize, int maxConfigs) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize must not be negative.");
+    }
+    if (maxConfigs < 0) {
+      throw new IllegalArgumentException("maxConfigs must not be negative.");
+    }
+    this.trackingServer = trackingServer;
+    this.appVersion = appVersion;
+    this.maxSize = maxSize;
+    this.maxConfigs = maxConfigs;
+    this.idle = new ArrayDeque<>(Math.max(1, maxSize));
+  }
+
+  /**
+   * Retrieves the configuration of a key, building it the first time.
+   *
+   * @param key Configuration values.
+   * @return Heartbeat configuration, shared by every heartbeat with the same key unless the cache
+   *     is disabled.
+   */
+  MediaHeartbeatConfig getConfig(Key key) {
+    if (maxConfigs == 0) {
+      return buildConfig(key);
+    }
+    MediaHeartbeatConfig config = configs.get(key);
+    if (config == null) {
+      config = buildConfig(key);
+      configs.put(key, config);
+    }
+    return config;
+  }
+
+  private MediaHeartbeatConfig buildConfig(Key key) {
+    MediaHeartbeatConfig config = new MediaHeartbeatConfig();
+    config.trackingServer = trackingServer;
+    config.channel = key.channel;
+    config.playerName = key.playerName;
+    config.appVersion = appVersion;
+    config.ovp = key.ovp;
+    config.ssl = key.ssl;
+    config.debugLogging = key.debug;
+    return config;
+  }
+
+  /**
+   * Takes an idle heartbeat with the same configuration.
+   *
+   * @param key Configuration values.
+   * @return The heartbeat, with its playhead reset, or <code>null</code> if none is idle.
+   */
+  Entry acquire(Key key) {
+    Iterator<Entry> iterator = idle.iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.key.equals(key)) {
+        iterator.remove();
+        entry.playback.reset();
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Keeps the heartbeat of an ended session for reuse, discarding the least recently released one
+   * if the pool is full.
+   *
+   * @param entry Heartbeat of a session on which <code>trackSessionEnd</code> was called.
+   */
+  void release(Entry entry) {
+    if (maxSize == 0) {
+      return;
+    }
+    if (idle.size() >= maxSize) {
+      idle.removeLast();
+    }
+    idle.addFirst(entry);
+  }
+
+  int size() {
+    return idle.size();
+  }
+
+  int getConfigCount() {
+    return configs.size();
+  }
+
+  /** Values of an event that define the configuration of a heartbeat. */
+  static final class Key {
+
+    final String channel;
+    final String playerName;
+    final String ovp;
+    final boolean ssl;
+    final boolean debug;
+
+    Key(String channel, String playerName, String ovp, boolean ssl, boolean debug) {
+      this.channel = channel;
+      this.playerName = playerName;
+      this.ovp = ovp;
+      this.ssl = ssl;
+      this.debug = debug;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key that = (Key) o;
+      return ssl == that.ssl
+          && debug == that.debug
+          && channel.equals(that.channel)
+          && playerName.equals(that.playerName)
+          && ovp.equals(that.ovp);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = channel.hashCode();
+      result = 31 * result + playerName.hashCode();
+      result = 31 * result + ovp.hashCode();
+      result = 31 * result + (ssl ? 1 : 0);
+      return 31 * result + (debug ? 1 : 0);
+    }
+  }
+
+  /** Heartbeat and the playhead it reads, which are reused together. */
+  static final class Entry {
+
+    final Key key;
+    final PlaybackDelegate playback;
+    final MediaHeartbeat heartbeat;
+
+    Entry(Key key, PlaybackDelegate playback, MediaHeartbeat heartbeat) {
+      this.key = key;
+      this.playback = playback;
+      this.heartbeat = heartbeat;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.content.Context;
+
+import java.util.Map;
+
+/**
+ * Adobe Analytics client that measures how long the wrapped client blocks when tracking hits, while
+ * metrics are enabled.
+ */
+class InstrumentedAdobeAnalyticsClient implements AdobeAnalyticsClient {
+
+  private final AdobeAnalyticsClient delegate;
+  private final RouteMetrics metrics;
+
+  InstrumentedAdobeAnalyticsClient(AdobeAnalyticsClient delegate, RouteMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void trackAction(String action, Map<String, Object> contextData) {
+    long start = metrics.start();
+    try {
+      delegate.trackAction(action, contextData);
+    } finally {
+      metrics.record(RouteMetrics.Route.CLIENT_TRACK_ACTION, start);
+    }
+  }
+
+  @Override
+  public void trackState(String state, Map<String, Object> contextData) {
+    long start = metrics.start();
+    try {
+      delegate.trackState(state, contextData);
+    } finally {
+      metrics.record(RouteMetrics.Route.CLIENT_TRACK_STATE, start);
+    }
+  }
+
+  @Override
+  public void setContext(Context context) {
+    delegate.setContext(context);
+  }
+
+  @Override
+  public void pauseCollectingLifecycleData() {
+    delegate.pauseCollectingLifecycleData();
+  }
+
+  @Override
+  public void collectLifecycleData(Activity activity) {
+    delegate.collectLifecycleData(activity);
+  }
+
+  @Override
+  public void setUserIdentifier(String identifier) {
+    delegate.setUserIdentifier(identifier);
+  }
+
+  @Override
+  public void setDebugLogging(Boolean debugLogging) {
+    delegate.setDebugLogging(debugLogging);
+  }
+
+  @Override
+  public void flushQueue() {
+    delegate.flushQueue();
+  }
+}
@@ -0,0 +1,61 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+/**
+ * Holds a value that is only created the first time it is needed. Creation is thread safe and
+ * happens at most once, reading the value afterwards does not lock.
+ *
+ * @param <T> Type of the value.
+ */
+abstract class Lazy<T> {
+
+  private volatile T value;
+
+  /**
+   * Holds a value that already exists.
+   *
+   * @param value Value, must not be <code>null</code>.
+   * @return Holder of the value.
+   */
+  static <T> Lazy<T> of(final T value) {
+    Lazy<T> lazy =
+        new Lazy<T>() {
+          @Override
+          protected T create() {
+            return value;
+          }
+        };
+    lazy.value = value;
+    return lazy;
+  }
+
+  /**
+   * @return The value, which is created if this is the first time it is needed.
+   */
+  T get() {
+    T result = value;
+    if (result == null) {
+      synchronized (this) {
+        result = value;
+        if (result == null) {
+          result = create();
+          value = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return <code>true</code> if the value has been created.
+   */
+  boolean isCreated() {
+    return value != null;
+  }
+
+  /**
+   * Creates the value, called at most once.
+   *
+   * @return The value, must not be <code>null</code>.
+   */
+  protected abstract T create();
+}
@@ -0,0 +1,104 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.content.Context;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Makes the lifecycle calls of the Adobe SDK, which read and write its preferences and hit
+ * database, on an executor instead of the thread of the activity callbacks. A serial executor keeps
+ * the calls in the same order as the callbacks.
+ *
+ * <p>Every activity has the same application context, so <code>setContext</code> is only called
+ * when the context changes.
+ */
+class LifecycleDispatcher {
+
+  private static final String THREAD_NAME = "Segment-AdobeAnalytics-Lifecycle";
+
+  /** Runs every call on the caller's thread. */
+  static final Executor DIRECT_EXECUTOR =
+      new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          command.run();
+        }
+      };
+
+  private final AdobeAnalyticsClient client;
+  private final Executor executor;
+  /** Last context set on the client. */
+  private volatile Context context;
+
+  /**
+   * Creates a lifecycle dispatcher.
+   *
+   * @param client Client that receives the lifecycle calls.
+   * @param executor Executor of the calls, it must run them one at a time in order.
+   * @param context Context the client was initialized with, may be <code>null</code>.
+   */
+  LifecycleDispatcher(AdobeAnalyticsClient client, Executor executor, Context context) {
+    this.client = client;
+    this.executor = executor;
+    this.context = context;
+  }
+
+  /**
+   * @return Executor that runs every call on a single background thread, in order.
+   */
+  static ExecutorService newSerialExecutor() {
+    return Executors.newSingleThreadExecutor(
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
+  /**
+   * Sets the context of the client, unless it is already set.
+   *
+   * @param context Application context.
+   * @return <code>true</code> if the call was dispatched, <code>false</code> if it was redundant.
+   */
+  boolean setContext(final Context context) {
+    if (context == this.context) {
+      return false;
+    }
+    this.context = context;
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            client.setContext(context);
+          }
+        });
+    return true;
+  }
+
+  void collectLifecycleData(final Activity activity) {
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            client.collectLifecycleData(activity);
+          }
+        });
+  }
+
+  void pauseCollectingLifecycleData() {
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            client.pauseCollectingLifecycleData();
+          }
+        });
+  }
+}
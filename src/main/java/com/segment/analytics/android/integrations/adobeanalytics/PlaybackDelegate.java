@@ -8,133 +8,147 @@ import com.segment.analytics.Properties;
  * PlaybackDelegate implements Adobe's MediaHeartbeatDelegate interface. This implementation allows
  * us to return the position of a video playhead during a video session.
  *
+ * <p>The playhead is updated on Segment's integration thread and read by Adobe's heartbeat timer
+ * thread. Its state is held in a single immutable {@link Playhead}, replaced as a whole on every
+ * update, so readers never see a position paired with the time of another update and never block.
+ *
  * @since 1.0.0
  */
 class PlaybackDelegate implements MediaHeartbeat.MediaHeartbeatDelegate {
 
-  /**
-   * The system time in millis at which the playhead is first set or updated. The playhead is first
-   * set upon instantiation of the PlaybackDelegate. The value is updated whenever {@link
-   * #calculateCurrentPlayheadPosition()} is invoked.
-   */
-  private long playheadPositionTime;
-  /** The current playhead position in seconds. */
-  private long playheadPosition;
+  /** Monotonic time source, used to measure how long the video has been playing. */
+  private final Clock clock;
 
-  /** Whether the video playhead is in a paused state. */
-  private boolean paused;
+  /** Current state of the playhead, only replaced by the integration thread. */
+  private volatile Playhead playhead;
 
-  /**
-   * Quality of service object. This is created and updated upon receipt of a "VideoEvent Quality
-   * Updated" event, which triggers {@link #createAndUpdateQosObject(Properties)}.
-   */
-  private MediaObject qosData;
+  /** Quality of service of the session, updated from its events. */
+  private final QosAggregator qos;
 
-  PlaybackDelegate() {
-    this.playheadPositionTime = System.currentTimeMillis();
-    this.paused = false;
+  PlaybackDelegate(Clock clock) {
+    this.clock = clock;
+    this.playhead = new Playhead(0, clock.elapsedMillis(), false);
+    this.qos = new QosAggregator(clock);
   }
 
   /**
-   * Creates a quality of service object.
+   * Updates the quality of service data.
    *
    * @param properties Properties object from a "VideoEvent Quality Updated" event, which triggers
    *     invocation of this method.
    */
-  void createAndUpdateQosObject(Properties properties) {
-    double startupTime = properties.getDouble("startupTime", 0);
-    if (startupTime == 0) {
-      startupTime = properties.getDouble("startup_time", 0);
-    }
-
-    long droppedFrames = properties.getLong("droppedFrames", 0);
-    if (droppedFrames == 0) {
-      droppedFrames = properties.getLong("dropped_frames", 0);
-    }
-
-    qosData =
-        MediaHeartbeat.createQoSObject(
-            properties.getLong("bitrate", 0),
-            startupTime,
-            properties.getDouble("fps", 0),
-            droppedFrames);
+  void updateQos(Properties properties) {
+    qos.update(properties);
   }
 
-  /** Adobe invokes this method once every ten seconds to report quality of service data. */
+  /**
+   * Adobe invokes this method once every ten seconds to report quality of service data. The object
+   * is only rebuilt when the data changed since the previous call.
+   */
   @Override
   public MediaObject getQoSObject() {
-    return qosData;
+    return qos.get();
   }
 
   /**
    * Adobe invokes this method once per second to resolve the current position of the video
-   * playhead. Unless paused, this method increments the value of {@link #playheadPosition} by one
-   * every second by calling {@link #calculateCurrentPlayheadPosition()}
+   * playhead. Unless paused, the position advances with the time elapsed since the playhead was
+   * last updated.
+   *
+   * @return Playhead position in seconds, with millisecond precision.
    */
   @Override
   public Double getCurrentPlaybackTime() {
-    if (paused) {
-      return (double) playheadPosition;
-    }
-    return (double) calculateCurrentPlayheadPosition();
+    return playhead.position(clock.elapsedMillis()) / 1000.0;
   }
 
   /**
-   * Stores the current playhead position in {@link #playheadPosition}. Also stores the system time
-   * at which the video was paused in {@link #playheadPositionTime}. Sets {@link #paused} to true so
-   * {@link #getCurrentPlaybackTime()} knows the video is in a paused state.
+   * Freezes the playhead at its current position, so {@link #getCurrentPlaybackTime()} does not
+   * advance until the playhead is unpaused.
    */
   void pausePlayhead() {
-    this.playheadPosition = calculateCurrentPlayheadPosition();
-    this.playheadPositionTime = System.currentTimeMillis();
-    this.paused = true;
+    Playhead current = playhead;
+    long now = clock.elapsedMillis();
+    // Pausing twice must not add the paused time to the playhead.
+    playhead = new Playhead(current.position(now), now, true);
   }
 
-  /**
-   * This method sets the {@link #paused} flag to false, as well as sets the {@link
-   * #playheadPositionTime} to the time at which the video is unpaused.
-   */
+  /** Resumes the playhead from the position it was paused at. */
   void unPausePlayhead() {
-    this.paused = false;
-    this.playheadPositionTime = System.currentTimeMillis();
+    Playhead current = playhead;
+    long now = clock.elapsedMillis();
+    playhead = new Playhead(current.position(now), now, false);
   }
 
   /**
-   * Updates member variables {@link #playheadPositionTime} and {@link #playheadPosition} whenever
-   * either a "VideoEvent Playback Seek Completed" or "VideoEvent Content Started" event is received
-   * AND contains properties.seekPosition or properties.position, respectively. After invocation,
-   * {@link #playheadPositionTime} is assigned to the system time at which the video event was
-   * received.
+   * Moves the playhead whenever either a "VideoEvent Playback Seek Completed" or "VideoEvent
+   * Content Started" event is received AND contains properties.seekPosition or properties.position,
+   * respectively. The playhead advances from this position from the clock time at which the video
+   * event was received, and keeps its paused state.
    *
    * @param playheadPosition properties.position passed by the customer into a "VideoEvent Playback
-   *     Seek Completed" or "VideoEvent Content Started" event. This value is required for accurate
-   *     reporting in the Adobe dashboard. It defaults to 0.
+   *     Seek Completed" or "VideoEvent Content Started" event, in seconds. This value is required
+   *     for accurate reporting in the Adobe dashboard. It defaults to 0.
    */
-  void updatePlayheadPosition(long playheadPosition) {
-    this.playheadPositionTime = System.currentTimeMillis();
-    this.playheadPosition = playheadPosition;
+  void updatePlayheadPosition(double playheadPosition) {
+    playhead =
+        new Playhead(Math.round(playheadPosition * 1000), clock.elapsedMillis(), playhead.paused);
   }
 
   /**
-   * Internal helper function used to calculate the {@link #playheadPosition}.
-   *
-   * <p>System.currentTimeMillis retrieves the current time in milliseconds, then we calculate the
-   * delta between the current time and the {@link #playheadPositionTime}, which is the system time
-   * at the time a Segment Spec'd VideoEvent event is triggered.
-   *
-   * @return long playheadPosition
+   * Moves the playhead back to the start and clears the quality of service data, so the delegate
+   * can be reused by a new session.
    */
-  private long calculateCurrentPlayheadPosition() {
-    long currentTime = System.currentTimeMillis();
-    long delta = (currentTime - this.playheadPositionTime) / 1000;
-    return this.playheadPosition + delta;
+  void reset() {
+    qos.reset();
+    playhead = new Playhead(0, clock.elapsedMillis(), false);
+  }
+
+  /** Clears the quality of service data of an ended session, so it can be collected. */
+  void clearQosData() {
+    qos.reset();
   }
 
   boolean isPaused() {
-    return paused;
+    return playhead.paused;
   }
 
   MediaObject getQosData() {
-    return qosData;
+    return qos.get();
+  }
+
+  QosAggregator getQos() {
+    return qos;
+  }
+
+  /** Immutable state of the playhead at the time it was last paused, resumed or moved. */
+  private static final class Playhead {
+
+    /** Playhead position in milliseconds. */
+    final long position;
+    /** The clock time in millis at which the position was set. */
+    final long time;
+    /** Whether the video playhead is in a paused state. */
+    final boolean paused;
+
+    Playhead(long position, long time, boolean paused) {
+      this.position = position;
+      this.time = time;
+      this.paused = paused;
+    }
+
+    /**
+     * Calculates the playhead position at a given clock time, adding the time elapsed since the
+     * position was set unless the playhead is paused.
+     *
+     * @param now Clock time in millis.
+     * @return Playhead position in milliseconds.
+     */
+    long position(long now) {
+      if (paused) {
+        return position;
+      }
+      return position + (now - time);
+    }
   }
 }
@@ -0,0 +1,191 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes ecommerce products in the format expected by the Adobe Analytics <code>&&products</code>
+ * variable: <code>category;id;quantity;price</code>, separated by commas. Examples: <code>
+ * athletic;shoes;1;10.0</code>, <code>;shoes;1;0.0</code>.
+ *
+ * <p>Products are appended straight into the output buffer as they are read from the event, so the
+ * cost of an event is a single buffer no matter the size of the cart.
+ */
+final class ProductsWriter {
+
+  /** Expected length of a single product, used to presize the output buffer. */
+  private static final int ESTIMATED_PRODUCT_LENGTH = 32;
+
+  private final String productIdentifier;
+
+  /**
+   * Creates a products writer.
+   *
+   * @param productIdentifier Field that represents the product id, may be <code>null</code>.
+   */
+  ProductsWriter(String productIdentifier) {
+    // When productIdentifier is "id" use the default behavior.
+    this.productIdentifier = "id".equals(productIdentifier) ? null : productIdentifier;
+  }
+
+  /**
+   * Identifies if an event property contains a list of products.
+   *
+   * @param products Value of the <code>products</code> property.
+   * @return <code>true</code> if it is a list with at least one product.
+   */
+  static boolean isProductList(Object products) {
+    if (!(products instanceof List)) {
+      return false;
+    }
+
+    for (Object product : (List<?>) products) {
+      if (product instanceof Map) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates a buffer big enough to hold a number of products.
+   *
+   * @param size Number of products.
+   * @return Empty buffer.
+   */
+  static StringBuilder newBuffer(int size) {
+    return new StringBuilder(Math.max(size, 1) * ESTIMATED_PRODUCT_LENGTH);
+  }
+
+  /**
+   * Appends a product to the buffer, separated from the previous product by a comma.
+   *
+   * <p>The product ID is read from the <code>productIdentifier</code> setting if present (supported
+   * values are <code>name</code>, <code>sku</code> and <code>id</code>). If the field is not
+   * present, it fallbacks to "productId", "product_id" and "id".
+   *
+   * <p>Currently we do not allow to have products without IDs. Adobe Analytics allows to send an
+   * extra product for merchandising evars and event serialization, as seen in the last example of
+   * the <a href="https://marketing.adobe.com/resources/help/en_US/sc/implement/products.html">docs
+   * </a>, but it is not well documented and does not conform Segment's spec.
+   *
+   * <p><b>NOTE: V2 Ecommerce spec defines "product_id" instead of "id". We fallback to "id" to keep
+   * backwards compatibility.</b>
+   *
+   * @param buffer Output buffer.
+   * @param product Product properties.
+   * @return <code>true</code> if the product was written, <code>false</code> if it does not have an
+   *     ID.
+   */
+  boolean append(StringBuilder buffer, Map<?, ?> product) {
+    String id = null;
+    if (productIdentifier != null) {
+      id = getString(product, productIdentifier);
+    }
+
+    // Fallback to "productId" and "product_id" as V2 ecommerce spec
+    if (isBlank(id)) {
+      id = getString(product, "productId");
+    }
+    if (isBlank(id)) {
+      id = getString(product, "product_id");
+    }
+
+    // Fallback to "id" as V1 ecommerce spec
+    if (isBlank(id)) {
+      id = getString(product, "id");
+    }
+
+    if (isBlank(id)) {
+      return false;
+    }
+
+    int quantity = getQuantity(product.get("quantity"));
+    double price = getPrice(product.get("price"));
+
+    if (buffer.length() > 0) {
+      buffer.append(',');
+    }
+
+    String category = getString(product, "category");
+    if (!isBlank(category)) {
+      buffer.append(category);
+    }
+    buffer.append(';').append(id).append(';').append(quantity).append(';').append(price * quantity);
+    return true;
+  }
+
+  /** Same as {@link com.segment.analytics.ValueMap#getString(String)}. */
+  private static String getString(Map<?, ?> map, String key) {
+    Object value = map.get(key);
+    if (value instanceof String) {
+      return (String) value;
+    }
+    return value != null ? String.valueOf(value) : null;
+  }
+
+  /** Same as <code>value.trim().length() == 0</code>, without creating a new string. */
+  private static boolean isBlank(String value) {
+    if (value == null) {
+      return true;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the product quantity, defaults to 1. Integral numbers are read without converting them to
+   * strings, any other value is parsed from its string representation.
+   */
+  private static int getQuantity(Object value) {
+    if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return ((Number) value).intValue();
+    }
+    if (value instanceof Long) {
+      long quantity = (Long) value;
+      return quantity == (int) quantity ? (int) quantity : 1;
+    }
+    if (value instanceof Double || value instanceof Float) {
+      // Their string representation is never a valid integer.
+      return 1;
+    }
+    if (value == null) {
+      return 1;
+    }
+
+    try {
+      return Integer.parseInt(String.valueOf(value));
+    } catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+
+  /**
+   * Reads the product unit price, defaults to 0. Doubles and integral numbers are read without
+   * converting them to strings, any other value is parsed from its string representation.
+   */
+  private static double getPrice(Object value) {
+    if (value instanceof Double) {
+      return (Double) value;
+    }
+    if (value instanceof Integer
+        || value instanceof Long
+        || value instanceof Short
+        || value instanceof Byte) {
+      return ((Number) value).doubleValue();
+    }
+    if (value == null) {
+      return 0.0;
+    }
+
+    try {
+      return Double.parseDouble(String.valueOf(value));
+    } catch (NumberFormatException e) {
+      return 0.0;
+    }
+  }
+}
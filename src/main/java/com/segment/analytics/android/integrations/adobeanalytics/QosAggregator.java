@@ -0,0 +1,192 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.adobe.primetime.va.simple.MediaHeartbeat;
+import com.adobe.primetime.va.simple.MediaObject;
+import com.segment.analytics.Properties;
+
+/**
+ * Aggregates the quality of service of a video session from its events, instead of building a new
+ * quality of service object for every "Video Quality Updated" event.
+ *
+ * <p>The startup time is measured from "Video Playback Started" to the first "Video Content
+ * Started", unless the app reports it. Buffering and seeking are counted, but only logged as Adobe
+ * has no quality of service fields for them.
+ *
+ * <p>Updates only store values, on Segment's integration thread. The values are held in a single
+ * immutable {@link Values}, replaced as a whole on every update, so a poll never combines values of
+ * consecutive updates. Adobe's heartbeat timer thread polls the object every ten seconds, and it is
+ * only rebuilt if the values were replaced since the previous poll.
+ */
+final class QosAggregator {
+
+  private final Clock clock;
+
+  /**
+   * Values to report, only replaced by the integration thread. <code>null</code> until there is
+   * anything to report, Adobe receives no object meanwhile.
+   */
+  private volatile Values values;
+
+  // Only used on the integration thread.
+  private long startedAt;
+  private boolean startupTimeKnown;
+  private boolean buffering;
+  private long bufferStartedAt;
+  private int bufferCount;
+  private long bufferMillis;
+  private int seekCount;
+
+  // Only used by the thread polling the object, guarded by this.
+  private Values builtValues;
+  private MediaObject built;
+
+  /**
+   * Creates an aggregator for a session that starts now.
+   *
+   * @param clock Monotonic clock, used to measure startup and buffering times.
+   */
+  QosAggregator(Clock clock) {
+    this.clock = clock;
+    this.startedAt = clock.elapsedMillis();
+  }
+
+  /**
+   * Stores the values of a "Video Quality Updated" event. A startup time reported by the app
+   * replaces the measured one.
+   *
+   * @param properties Event properties.
+   */
+  void update(Properties properties) {
+    double reportedStartupTime = properties.getDouble("startupTime", 0);
+    if (reportedStartupTime == 0) {
+      reportedStartupTime = properties.getDouble("startup_time", 0);
+    }
+
+    long reportedDroppedFrames = properties.getLong("droppedFrames", 0);
+    if (reportedDroppedFrames == 0) {
+      reportedDroppedFrames = properties.getLong("dropped_frames", 0);
+    }
+
+    long reportedBitrate = properties.getLong("bitrate", 0);
+    double reportedFps = properties.getDouble("fps", 0);
+    Values current = values;
+    double startupTime = current != null ? current.startupTime : 0;
+    if (reportedStartupTime != 0) {
+      startupTime = reportedStartupTime;
+    }
+    if (current != null
+        && reportedBitrate == current.bitrate
+        && reportedFps == current.fps
+        && reportedDroppedFrames == current.droppedFrames
+        && startupTime == current.startupTime) {
+      // Players resend the same values, which do not need a new object.
+      return;
+    }
+
+    if (reportedStartupTime != 0) {
+      startupTimeKnown = true;
+    }
+    values = new Values(reportedBitrate, startupTime, reportedFps, reportedDroppedFrames);
+  }
+
+  /** Measures the startup time when the content of the session starts for the first time. */
+  void contentStarted() {
+    if (startupTimeKnown) {
+      return;
+    }
+    startupTimeKnown = true;
+    double startupTime = (clock.elapsedMillis() - startedAt) / 1000.0;
+    Values current = values;
+    values =
+        current != null
+            ? new Values(current.bitrate, startupTime, current.fps, current.droppedFrames)
+            : new Values(0, startupTime, 0, 0);
+  }
+
+  void bufferStarted() {
+    if (buffering) {
+      return;
+    }
+    buffering = true;
+    bufferStartedAt = clock.elapsedMillis();
+    bufferCount++;
+  }
+
+  void bufferCompleted() {
+    if (!buffering) {
+      return;
+    }
+    buffering = false;
+    bufferMillis += clock.elapsedMillis() - bufferStartedAt;
+  }
+
+  void seekStarted() {
+    seekCount++;
+  }
+
+  /** Clears every value, for a session that starts now. */
+  void reset() {
+    values = null;
+    startedAt = clock.elapsedMillis();
+    startupTimeKnown = false;
+    buffering = false;
+    bufferCount = 0;
+    bufferMillis = 0;
+    seekCount = 0;
+  }
+
+  /**
+   * Retrieves the quality of service object, rebuilt only if a value changed since it was last
+   * retrieved.
+   *
+   * @return Quality of service object, or <code>null</code> if there is nothing to report yet.
+   */
+  synchronized MediaObject get() {
+    Values current = values;
+    if (current != builtValues) {
+      builtValues = current;
+      built =
+          current != null
+              ? MediaHeartbeat.createQoSObject(
+                  current.bitrate, current.startupTime, current.fps, current.droppedFrames)
+              : null;
+    }
+    return built;
+  }
+
+  int getBufferCount() {
+    return bufferCount;
+  }
+
+  /**
+   * @return Time spent buffering in milliseconds, including the ongoing buffering.
+   */
+  long getBufferMillis() {
+    if (buffering) {
+      return bufferMillis + clock.elapsedMillis() - bufferStartedAt;
+    }
+    return bufferMillis;
+  }
+
+  int getSeekCount() {
+    return seekCount;
+  }
+
+  /** Immutable quality of service values of a single update. */
+  private static final class Values {
+
+    final long bitrate;
+    /** Startup time in seconds. */
+    final double startupTime;
+
+    final double fps;
+    final long droppedFrames;
+
+    Values(long bitrate, double startupTime, double fps, long droppedFrames) {
+      this.bitrate = bitrate;
+      this.startupTime = startupTime;
+      this.fps = fps;
+      this.droppedFrames = droppedFrames;
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms for every route an event can take through the integration.
+ *
+ * <p>Recording is lock free: the counters and histogram buckets of a route are striped by thread so
+ * concurrent writers do not contend on the same cache line, and histograms use fixed buckets so
+ * recording never allocates. Readers sum the stripes, which makes snapshots approximate while
+ * events are being recorded.
+ *
+ * <p>Recording can be enabled and disabled at any time. While disabled, calls only read a flag.
+ */
+final class RouteMetrics {
+
+  /** Start time of a call that is not measured, because metrics were disabled when it started. */
+  static final long NOT_STARTED = Long.MIN_VALUE;
+
+  /** Routes that do not depend on the event name. */
+  enum Route {
+    SCREEN("screen"),
+    ACTION("track.action"),
+    UNMAPPED("track.unmapped"),
+    UNSUPPORTED("track.unsupported"),
+    VIDEO_DROPPED("video.dropped"),
+    LIFECYCLE("lifecycle"),
+    FLUSH("flush"),
+    CLIENT_TRACK_ACTION("client.trackAction"),
+    CLIENT_TRACK_STATE("client.trackState");
+
+    private final String name;
+
+    Route(String name) {
+      this.name = name;
+    }
+  }
+
+  /** Upper bounds of the latency buckets, the last bucket holds every slower call. */
+  static final long[] BUCKET_UPPER_BOUNDS_NANOS = {
+    1000L,
+    2000L,
+    5000L,
+    10000L,
+    20000L,
+    50000L,
+    100000L,
+    200000L,
+    500000L,
+    1000000L,
+    2000000L,
+    5000000L,
+    10000000L,
+    20000000L,
+    50000000L,
+    100000000L,
+    200000000L,
+    500000000L,
+    1000000000L,
+    Long.MAX_VALUE
+  };
+
+  private final Recorder[] routes;
+  private final Recorder[] ecommerce;
+  private final Recorder[] video;
+  private volatile boolean enabled;
+
+  /**
+   * @param enabled <code>true</code> to record calls right away.
+   */
+  RouteMetrics(boolean enabled) {
+    this.enabled = enabled;
+
+    routes = new Recorder[Route.values().length];
+    for (Route route : Route.values()) {
+      routes[route.ordinal()] = new Recorder(route.name);
+    }
+
+    ecommerce = new Recorder[EcommerceAnalytics.Event.values().length];
+    for (EcommerceAnalytics.Event event : EcommerceAnalytics.Event.values()) {
+      ecommerce[event.ordinal()] = new Recorder("ecommerce." + event.getSegmentEvent());
+    }
+
+    video = new Recorder[VideoAnalytics.Event.values().length];
+    for (VideoAnalytics.Event event : VideoAnalytics.Event.values()) {
+      video[event.ordinal()] = new Recorder("video." + event.getName());
+    }
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Enables or disables recording. Disabling discards everything recorded so far.
+   *
+   * @param enabled <code>true</code> to record calls.
+   */
+  void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      reset(routes);
+      reset(ecommerce);
+      reset(video);
+    }
+  }
+
+  /**
+   * @return Start time of a call, to be recorded once it completes, or {@link #NOT_STARTED} while
+   *     recording is disabled.
+   */
+  long start() {
+    return enabled ? System.nanoTime() : NOT_STARTED;
+  }
+
+  /**
+   * Records a call. Calls that started while recording was disabled are ignored.
+   *
+   * @param route Route of the call.
+   * @param startNanos Value returned by {@link #start()} when the call started.
+   */
+  void record(Route route, long startNanos) {
+    if (startNanos != NOT_STARTED && enabled) {
+      routes[route.ordinal()].record(System.nanoTime() - startNanos);
+    }
+  }
+
+  void record(EcommerceAnalytics.Event event, long startNanos) {
+    if (startNanos != NOT_STARTED && enabled) {
+      ecommerce[event.ordinal()].record(System.nanoTime() - startNanos);
+    }
+  }
+
+  void record(VideoAnalytics.Event event, long startNanos) {
+    if (startNanos != NOT_STARTED && enabled) {
+      video[event.ordinal()].record(System.nanoTime() - startNanos);
+    }
+  }
+
+  /**
+   * Counts a call without measuring its latency, used for events that are dropped.
+   *
+   * @param route Route of the call.
+   */
+  void increment(Route route) {
+    if (enabled) {
+      routes[route.ordinal()].increment();
+    }
+  }
+
+  /**
+   * @return Snapshot of every route, keyed by route name.
+   */
+  Map<String, AdobeMetrics.RouteSnapshot> snapshot() {
+    Map<String, AdobeMetrics.RouteSnapshot> snapshot = new LinkedHashMap<>();
+    snapshot(routes, snapshot);
+    snapshot(ecommerce, snapshot);
+    snapshot(video, snapshot);
+    return snapshot;
+  }
+
+  private static void reset(Recorder[] recorders) {
+    for (Recorder recorder : recorders) {
+      recorder.reset();
+    }
+  }
+
+  private static void snapshot(
+      Recorder[] recorders, Map<String, AdobeMetrics.RouteSnapshot> snapshot) {
+    for (Recorder recorder : recorders) {
+      snapshot.put(recorder.name, recorder.snapshot());
+    }
+  }
+
+  /** Latency histogram and counters of a single route. */
+  private static final class Recorder {
+
+    private static final int COUNT = 0;
+    private static final int TOTAL_NANOS = 1;
+    private static final int BUCKETS = 2;
+
+    final String name;
+    final StripedCounters counters =
+        new StripedCounters(BUCKETS + BUCKET_UPPER_BOUNDS_NANOS.length);
+
+    Recorder(String name) {
+      this.name = name;
+    }
+
+    void record(long nanos) {
+      int stripe = counters.stripe();
+      counters.add(stripe, COUNT, 1);
+      counters.add(stripe, TOTAL_NANOS, nanos);
+      counters.add(stripe, BUCKETS + bucket(nanos), 1);
+    }
+
+    void increment() {
+      counters.add(counters.stripe(), COUNT, 1);
+    }
+
+    void reset() {
+      counters.reset();
+    }
+
+    AdobeMetrics.RouteSnapshot snapshot() {
+      long[] counts = new long[BUCKET_UPPER_BOUNDS_NANOS.length];
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = counters.sum(BUCKETS + i);
+      }
+      return new AdobeMetrics.RouteSnapshot(
+          name, counters.sum(COUNT), counters.sum(TOTAL_NANOS), counts);
+    }
+
+    private static int bucket(long nanos) {
+      int i = 0;
+      while (nanos > BUCKET_UPPER_BOUNDS_NANOS[i]) {
+        i++;
+      }
+      return i;
+    }
+  }
+
+  /**
+   * Set of counters split in stripes chosen by the current thread. The counters of a stripe are
+   * contiguous, and stripes are far enough apart to never share a cache line.
+   */
+  private static final class StripedCounters {
+
+    private static final int STRIPES = 4;
+    // A cache line holds 8 longs.
+    private static final int PADDING = 8;
+
+    private final int stride;
+    private final AtomicLongArray cells;
+
+    /**
+     * @param size Number of counters.
+     */
+    StripedCounters(int size) {
+      // Leaves at least a cache line between the last counter of a stripe and the next stripe.
+      stride = (size + 2 * PADDING - 2) / PADDING * PADDING;
+      cells = new AtomicLongArray(STRIPES * stride);
+    }
+
+    /**
+     * @return Offset of the stripe of the current thread.
+     */
+    int stripe() {
+      long id = Thread.currentThread().getId();
+      return ((int) (id ^ (id >>> 32)) & (STRIPES - 1)) * stride;
+    }
+
+    void add(int stripe, int counter, long value) {
+      cells.addAndGet(stripe + counter, value);
+    }
+
+    long sum(int counter) {
+      long sum = 0;
+      for (int i = 0; i < STRIPES; i++) {
+        sum += cells.get(i * stride + counter);
+      }
+      return sum;
+    }
+
+    void reset() {
+      for (int i = 0; i < cells.length(); i++) {
+        cells.set(i, 0);
+      }
+    }
+  }
+}
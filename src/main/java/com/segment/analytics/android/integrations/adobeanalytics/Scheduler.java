@@ -0,0 +1,35 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/** Runs tasks after a delay, used for debounce windows and timeouts. */
+interface Scheduler {
+
+  void postDelayed(Runnable task, long delayMillis);
+
+  void cancel(Runnable task);
+
+  /**
+   * Default scheduler, which runs tasks on the main thread like the activity callbacks and the
+   * integration calls.
+   *
+   * <p>Do not add logic here.
+   */
+  class MainThreadScheduler implements Scheduler {
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    MainThreadScheduler() {}
+
+    @Override
+    public void postDelayed(Runnable task, long delayMillis) {
+      handler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+      handler.removeCallbacks(task);
+    }
+  }
+}
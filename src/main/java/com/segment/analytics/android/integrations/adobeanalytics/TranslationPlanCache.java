@@ -0,0 +1,281 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches how the properties of an event are translated into context data, so events that are sent
+ * again and again with the same properties do not classify every key and build every variable name
+ * again.
+ *
+ * <p>Plans are kept per event name, a few shapes per event, most recent first. A plan is only used
+ * for properties with exactly its keys. Keys are compared in the order of the plan first, which
+ * does not hash them when the properties are built in the same order every time, and looked up
+ * otherwise.
+ *
+ * <p>Reads do not lock, they only mark their event as recently used. Plans are only added on the
+ * first event of a shape, by replacing the shapes of its event at once. The cache holds a bounded
+ * number of events, and evicts the least recently used one to make room for a new one, approximated
+ * with a clock: events used since the clock hand last passed them get a second chance.
+ */
+final class TranslationPlanCache {
+
+  /** Default number of events whose plans are kept in the cache. */
+  static final int DEFAULT_MAX_SIZE = 64;
+
+  /** Number of shapes kept per event, such as the same event with and without optional keys. */
+  static final int MAX_SHAPES_PER_EVENT = 4;
+
+  private final ContextDataConfiguration configuration;
+  private final Set<String> reservedKeys;
+  private final int maxSize;
+  private final ConcurrentHashMap<String, Entry> plans;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  // Guarded by clock.
+  /** Cached events in eviction order, the hand points to the next candidate. */
+  private final Entry[] clock;
+
+  private int hand;
+
+  /**
+   * Creates a plan cache.
+   *
+   * @param configuration Context data configuration the plans are built from. A new cache must be
+   *     created when the configuration changes.
+   * @param reservedKeys Properties that must not be sent as extra properties.
+   * @param maxSize Maximum number of events.
+   */
+  TranslationPlanCache(
+      ContextDataConfiguration configuration, Set<String> reservedKeys, int maxSize) {
+    this.configuration = configuration;
+    this.reservedKeys = reservedKeys;
+    this.maxSize = maxSize;
+    this.plans = new ConcurrentHashMap<>();
+    this.clock = new Entry[maxSize];
+  }
+
+  /**
+   * Writes the extra properties of an event, the ones that are neither reserved nor mapped to a
+   * variable, with the plan of its shape. The plan is built if the shape was not seen recently.
+   *
+   * @param event Event or screen name, may be <code>null</code>.
+   * @param properties Event properties.
+   * @param extraAsString <code>true</code> to write values as strings.
+   * @param output Map where context data is written.
+   */
+  void writeExtraProperties(
+      String event,
+      Map<String, Object> properties,
+      boolean extraAsString,
+      Map<String, Object> output) {
+    if (event == null) {
+      event = "";
+    }
+
+    Entry entry = plans.get(event);
+    if (entry != null) {
+      entry.touch();
+      for (Plan plan : entry.shapes) {
+        // A plan that does not know a key stops before writing anything wrong: the keys it knows
+        // are translated the same way by every plan, and are overwritten by the next one.
+        if (plan.size() == properties.size()
+            && plan.writeExtraProperties(properties, extraAsString, output)) {
+          hits.incrementAndGet();
+          return;
+        }
+      }
+    }
+
+    misses.incrementAndGet();
+    Plan plan = new Plan(this, properties);
+    plan.writeExtraProperties(properties, extraAsString, output);
+    add(event, plan);
+  }
+
+  /**
+   * @return Number of events written with a cached plan.
+   */
+  long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return Number of plans built, because the shape of an event was not in the cache.
+   */
+  long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return Number of events whose plans are in the cache.
+   */
+  int size() {
+    return plans.size();
+  }
+
+  int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Adds a plan in front of the shapes of its event, evicting the least recently used event if the
+   * event is new and the cache is full. Only misses lock.
+   */
+  private void add(String event, Plan plan) {
+    synchronized (clock) {
+      Entry entry = plans.get(event);
+      if (entry != null) {
+        Plan[] shapes = entry.shapes;
+        Plan[] next = new Plan[Math.min(shapes.length + 1, MAX_SHAPES_PER_EVENT)];
+        next[0] = plan;
+        System.arraycopy(shapes, 0, next, 1, next.length - 1);
+        entry.shapes = next;
+        return;
+      }
+      if (maxSize <= 0) {
+        return;
+      }
+
+      // Clears the mark of the events used since the hand last passed them, until it finds one
+      // that was not.
+      while (clock[hand] != null && clock[hand].referenced) {
+        clock[hand].referenced = false;
+        hand = (hand + 1) % clock.length;
+      }
+      if (clock[hand] != null) {
+        plans.remove(clock[hand].event);
+      }
+      entry = new Entry(event, new Plan[] {plan});
+      clock[hand] = entry;
+      hand = (hand + 1) % clock.length;
+      plans.put(event, entry);
+    }
+  }
+
+  /**
+   * Classifies a property key.
+   *
+   * @param key Property key.
+   * @return How the property is written, {@link Slot#RESERVED} if it is reserved.
+   */
+  private Slot translate(String key) {
+    if (reservedKeys.contains(key)) {
+      return Slot.RESERVED;
+    }
+    return new Slot(configuration.getPrefixedName(key), configuration.isPropertyField(key));
+  }
+
+  /** Plans of a cached event. */
+  private static final class Entry {
+
+    final String event;
+    /** Shapes of the event, most recent first, replaced as a whole. */
+    volatile Plan[] shapes;
+    /** Whether the event was used since the clock hand last passed it. */
+    volatile boolean referenced;
+
+    Entry(String event, Plan[] shapes) {
+      this.event = event;
+      this.shapes = shapes;
+    }
+
+    void touch() {
+      // Most events are already marked, which does not need a write.
+      if (!referenced) {
+        referenced = true;
+      }
+    }
+  }
+
+  /** Precomputed translation of every property key of an event shape. */
+  static final class Plan {
+
+    private final String[] keys;
+    private final Slot[] slots;
+    private final Map<String, Slot> slotsByKey;
+
+    private Plan(TranslationPlanCache cache, Map<String, Object> properties) {
+      int size = properties.size();
+      this.keys = new String[size];
+      this.slots = new Slot[size];
+      this.slotsByKey = new HashMap<>(size * 2);
+      int i = 0;
+      for (String key : properties.keySet()) {
+        Slot slot = cache.translate(key);
+        keys[i] = key;
+        slots[i] = slot;
+        slotsByKey.put(key, slot);
+        i++;
+      }
+    }
+
+    int size() {
+      return keys.length;
+    }
+
+    /**
+     * Writes the extra properties of an event with the same number of keys as the plan, using their
+     * precomputed names.
+     *
+     * @param properties Event properties.
+     * @param extraAsString <code>true</code> to write values as strings.
+     * @param output Map where context data is written.
+     * @return <code>false</code> if a key is not part of the plan, in which case the remaining
+     *     properties are not written.
+     */
+    boolean writeExtraProperties(
+        Map<String, Object> properties, boolean extraAsString, Map<String, Object> output) {
+      int i = 0;
+      for (Map.Entry<String, Object> entry : properties.entrySet()) {
+        String key = entry.getKey();
+        Slot slot;
+        if (i < keys.length && (keys[i] == key || keys[i].equals(key))) {
+          slot = slots[i];
+        } else {
+          slot = slotsByKey.get(key);
+          if (slot == null) {
+            return false;
+          }
+        }
+        i++;
+
+        if (slot == Slot.RESERVED) {
+          continue;
+        }
+
+        Object value = entry.getValue();
+        // Mapped properties were already added with their variable name.
+        if (value != null && slot.mapped) {
+          continue;
+        }
+
+        if (extraAsString && value != null) {
+          value = String.valueOf(value);
+        }
+        output.put(slot.outputKey, value);
+      }
+      return true;
+    }
+  }
+
+  /** Translation of a single property key. */
+  private static final class Slot {
+
+    static final Slot RESERVED = new Slot(null, false);
+
+    /** Context data key, with the configured prefix. */
+    final String outputKey;
+    /** Whether the property is mapped to a variable. */
+    final boolean mapped;
+
+    Slot(String outputKey, boolean mapped) {
+      this.outputKey = outputKey;
+      this.mapped = mapped;
+    }
+  }
+}
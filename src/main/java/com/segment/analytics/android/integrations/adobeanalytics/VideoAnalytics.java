@@ -11,8 +11,15 @@ import com.segment.analytics.integrations.BasePayload;
 import com.segment.analytics.integrations.Logger;
 import com.segment.analytics.integrations.TrackPayload;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Generate events for all video actions.
@@ -65,11 +72,14 @@ class VideoAnalytics {
       }
     }
 
+    /**
+     * Retrieves the event using the Adobe Analytics video event name.
+     *
+     * @param name Event name.
+     * @return The event, or <code>null</code> if it is not a video event.
+     */
     static Event get(String name) {
-      if (names.containsKey(name)) {
-        return names.get(name);
-      }
-      throw new IllegalArgumentException(name + " is not a valid video event");
+      return names.get(name);
     }
 
     /**
@@ -86,6 +96,38 @@ class VideoAnalytics {
   private static final Map<String, String> VIDEO_METADATA_KEYS = new HashMap<>();
   private static final Map<String, String> AD_METADATA_KEYS = new HashMap<>();
 
+  /** Properties sent as part of the media objects, which are not sent as context data. */
+  private static final List<String> MEDIA_OBJECT_KEYS =
+      Arrays.asList(
+          "title",
+          "indexPosition",
+          "index_position",
+          "position",
+          "totalLength",
+          "total_length",
+          "startTime",
+          "start_time");
+
+  /** Session id of the events that do not define one. */
+  private static final String DEFAULT_SESSION_ID = "";
+
+  /** Maximum number of active sessions, the oldest session is ended when a new one starts. */
+  static final int MAX_SESSIONS = 16;
+
+  /**
+   * Default time after which a session that stopped playing is ended, the same time after which
+   * Adobe closes a paused session.
+   */
+  static final long DEFAULT_SESSION_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
+  /** Default time in background after which a suspended session is ended. */
+  static final long DEFAULT_BACKGROUND_TIMEOUT_MILLIS = 10 * 60 * 1000L;
+
+  /** Properties reserved by ad events. */
+  private static final Set<String> AD_RESERVED_KEYS = new HashSet<>();
+  /** Properties reserved by video events, which also describe the stream format. */
+  private static final Set<String> VIDEO_RESERVED_KEYS = new HashSet<>();
+
   /**
    * Creates MediaHeartbeats with the provided delegate.
    *
@@ -108,6 +150,14 @@ class VideoAnalytics {
       VIDEO_METADATA_KEYS.put("rating", MediaHeartbeat.VideoMetadataKeys.RATING);
 
       AD_METADATA_KEYS.put("publisher", MediaHeartbeat.AdMetadataKeys.ADVERTISER);
+
+      AD_RESERVED_KEYS.add("products");
+      AD_RESERVED_KEYS.addAll(VIDEO_METADATA_KEYS.keySet());
+      AD_RESERVED_KEYS.addAll(AD_METADATA_KEYS.keySet());
+      AD_RESERVED_KEYS.addAll(MEDIA_OBJECT_KEYS);
+
+      VIDEO_RESERVED_KEYS.addAll(AD_RESERVED_KEYS);
+      VIDEO_RESERVED_KEYS.add("livestream");
     }
 
     HeartbeatFactory() {}
@@ -119,14 +169,64 @@ class VideoAnalytics {
   }
 
   private String heartbeatTrackingServerUrl;
-  private ContextDataConfiguration contextDataConfiguration;
+  /** Configuration of events tracked directly, the integration passes its own with each event. */
+  private volatile AdobeConfiguration configuration;
+
   private boolean ssl;
   private boolean debug;
-  private boolean sessionStarted;
   private String packageName;
-  private PlaybackDelegate playback;
-  private MediaHeartbeat heartbeat;
+  /** Active sessions keyed by session id, in the order they were started. */
+  private Map<String, VideoSession> sessions;
+  /** Most recently started session, which receives the events that do not define a session id. */
+  private VideoSession currentSession;
+
   private HeartbeatFactory heartbeatFactory;
+  /** Heartbeats of ended sessions, which new sessions reuse. */
+  private HeartbeatPool heartbeatPool;
+
+  /**
+   * Time after which a session that is paused, buffering or seeking is ended, <code>0</code> never
+   * ends them.
+   */
+  private long sessionTimeoutMillis;
+  /**
+   * Time in background after which a suspended session is ended, <code>0</code> never ends them.
+   */
+  private long backgroundTimeoutMillis;
+  /** Whether sessions are suspended while the app is in background. */
+  private boolean suspendInBackground;
+  /** Whether the app is in background. */
+  private boolean background;
+  /** Time during which seek and buffer events are held back to be coalesced, 0 sends them as is. */
+  private long coalescingWindowMillis;
+
+  private boolean flushScheduled;
+
+  private final Runnable flusher =
+      new Runnable() {
+        @Override
+        public void run() {
+          flushScheduled = false;
+          flushHeldEvents();
+        }
+      };
+  /** Runs the reaper, on the same thread as the integration calls. */
+  private Scheduler scheduler;
+
+  private boolean reaperScheduled;
+  /** Clock time at which the scheduled reaper runs. */
+  private long reaperDueMillis;
+
+  private final Runnable reaper =
+      new Runnable() {
+        @Override
+        public void run() {
+          reaperScheduled = false;
+          endIdleSessions();
+        }
+      };
+
+  private Clock clock;
   private Logger logger;
 
   VideoAnalytics(
@@ -146,11 +246,16 @@ class VideoAnalytics {
       HeartbeatFactory heartbeatFactory,
       Logger logger) {
     this.heartbeatFactory = heartbeatFactory;
+    this.clock = new Clock.DefaultClock();
+    this.scheduler = new Scheduler.MainThreadScheduler();
+    this.sessionTimeoutMillis = DEFAULT_SESSION_TIMEOUT_MILLIS;
+    this.backgroundTimeoutMillis = DEFAULT_BACKGROUND_TIMEOUT_MILLIS;
+    this.suspendInBackground = true;
     this.logger = logger;
     this.ssl = ssl;
-    this.contextDataConfiguration = contextDataConfiguration;
+    this.configuration = new AdobeConfiguration(null, contextDataConfiguration, null);
 
-    sessionStarted = false;
+    sessions = new LinkedHashMap<>();
     debug = false;
     heartbeatTrackingServerUrl = serverUrl;
 
@@ -159,252 +264,778 @@ class VideoAnalytics {
       // default app version to "unknown" if not otherwise present b/c Adobe requires this value
       packageName = "unknown";
     }
+    heartbeatPool =
+        new HeartbeatPool(heartbeatTrackingServerUrl, packageName, HeartbeatPool.DEFAULT_MAX_SIZE);
   }
 
-  void track(TrackPayload payload) {
+  boolean track(TrackPayload payload) {
     Event event = Event.get(payload.event());
+    if (event == null) {
+      logger.verbose("%s is not a valid video event.", payload.event());
+      return false;
+    }
+    return track(payload, event);
+  }
+
+  /**
+   * Tracks a video event that has already been resolved from the event name. Events that do not
+   * belong to an active session are dropped, as Adobe can not attribute them to any video.
+   *
+   * @param payload Event payload.
+   * @param event Video event.
+   * @return <code>true</code> if the event was sent to Adobe, <code>false</code> if it was dropped.
+   */
+  boolean track(TrackPayload payload, Event event) {
+    return track(payload, event, configuration);
+  }
 
+  /**
+   * Tracks a video event using a configuration snapshot, which is used for the whole event.
+   *
+   * @param payload Event payload.
+   * @param event Video event.
+   * @param configuration Configuration snapshot.
+   * @return <code>true</code> if the event was sent to Adobe, <code>false</code> if it was dropped.
+   */
+  boolean track(TrackPayload payload, Event event, AdobeConfiguration configuration) {
+    ContextDataConfiguration contextDataConfiguration = configuration.getContextDataConfiguration();
     if (heartbeatTrackingServerUrl == null) {
       logger.verbose(
           "Please enter a Heartbeat Tracking Server URL in your Segment UI "
               + "Settings in order to send video events to Adobe Analytics");
-      return;
+      return false;
     }
 
-    if (event != Event.PlaybackStarted && !sessionStarted) {
-      throw new IllegalStateException("Video session has not started yet.");
+    if (event == Event.PlaybackStarted) {
+      trackVideoPlaybackStarted(payload, contextDataConfiguration);
+      return true;
+    }
+
+    VideoSession session = getSession(payload);
+    if (session == null) {
+      logger.verbose("Video session has not started yet, dropping %s.", payload.event());
+      return false;
+    }
+    if (!isCoalesced(event)) {
+      // Held events happened first.
+      flushHeldEvents(session);
+    }
+    if (session.isSuspended() && isPlaybackStateChange(event)) {
+      // The app is handling its player in background, it decides whether it plays again. A session
+      // it plays in background is not suspended anymore.
+      if (event == Event.PlaybackResumed) {
+        session.resume();
+      } else {
+        session.keepPlaybackState();
+      }
     }
 
     switch (event) {
       case PlaybackStarted:
-        trackVideoPlaybackStarted(payload);
         break;
 
       case PlaybackPaused:
-        trackVideoPlaybackPaused();
+        trackVideoPlaybackPaused(session);
         break;
 
       case PlaybackResumed:
-        trackVideoPlaybackResumed();
+        trackVideoPlaybackResumed(session);
         break;
 
       case PlaybackCompleted:
-        trackVideoPlaybackCompleted();
+        trackVideoPlaybackCompleted(session);
         break;
 
       case ContentStarted:
-        trackVideoContentStarted(payload);
+        trackVideoContentStarted(session, payload, contextDataConfiguration);
         break;
 
       case ContentCompleted:
-        trackVideoContentCompleted();
+        trackVideoContentCompleted(session);
         break;
 
       case PlaybackBufferStarted:
-        trackVideoPlaybackBufferStarted();
+        trackVideoPlaybackBufferStarted(session);
         break;
 
       case PlaybackBufferCompleted:
-        trackVideoPlaybackBufferCompleted();
+        trackVideoPlaybackBufferCompleted(session);
         break;
 
       case PlaybackSeekStarted:
-        trackVideoPlaybackSeekStarted();
+        trackVideoPlaybackSeekStarted(session);
         break;
 
       case PlaybackSeekCompleted:
-        trackVideoPlaybackSeekCompleted(payload);
+        trackVideoPlaybackSeekCompleted(session, payload);
         break;
 
       case AdBreakStarted:
-        trackVideoAdBreakStarted(payload);
+        trackVideoAdBreakStarted(session, payload, contextDataConfiguration);
         break;
 
       case AdBreakCompleted:
-        trackVideoAdBreakCompleted();
+        trackVideoAdBreakCompleted(session);
         break;
 
       case AdStarted:
-        trackVideoAdStarted(payload);
+        trackVideoAdStarted(session, payload, contextDataConfiguration);
         break;
 
       case AdSkipped:
-        trackVideoAdSkipped();
+        trackVideoAdSkipped(session);
         break;
 
       case AdCompleted:
-        trackVideoAdCompleted();
+        trackVideoAdCompleted(session);
         break;
 
       case PlaybackInterrupted:
-        trackVideoPlaybackInterrupted();
+        trackVideoPlaybackInterrupted(session);
         break;
 
       case QualityUpdated:
-        trackVideoQualityUpdated(payload);
+        trackVideoQualityUpdated(session, payload);
         break;
     }
+    return true;
   }
 
-  private void trackVideoPlaybackStarted(TrackPayload track) {
+  private void trackVideoPlaybackStarted(
+      TrackPayload track, ContextDataConfiguration contextDataConfiguration) {
     Properties eventProperties = track.properties();
-    MediaHeartbeatConfig config = new MediaHeartbeatConfig();
 
-    config.trackingServer = heartbeatTrackingServerUrl;
-    config.channel = eventProperties.getString("channel");
-    if (config.channel == null) {
-      config.channel = "";
+    String channel = eventProperties.getString("channel");
+    if (channel == null) {
+      channel = "";
     }
 
-    config.playerName = eventProperties.getString("videoPlayer");
-    if (config.playerName == null) {
-      config.playerName = eventProperties.getString("video_player");
-      if (config.playerName == null) {
-        config.playerName = "unknown";
+    String playerName = eventProperties.getString("videoPlayer");
+    if (playerName == null) {
+      playerName = eventProperties.getString("video_player");
+      if (playerName == null) {
+        playerName = "unknown";
       }
     }
 
-    config.appVersion = packageName;
-    config.ssl = ssl;
-    config.debugLogging = debug;
+    String ovp = null;
     ValueMap eventOptions = track.integrations().getValueMap("Adobe Analytics");
-    if (eventOptions != null && eventOptions.getString("ovpName") != null) {
-      config.ovp = eventOptions.getString("ovpName");
-    } else if (eventOptions != null && eventOptions.getString("ovp_name") != null) {
-      config.ovp = eventOptions.getString("ovp_name");
-    } else if (eventOptions != null && eventOptions.getString("ovp") != null) {
-      config.ovp = eventOptions.getString("ovp");
-    } else {
-      config.ovp = "unknown";
+    if (eventOptions != null) {
+      ovp = eventOptions.getString("ovpName");
+      if (ovp == null) {
+        ovp = eventOptions.getString("ovp_name");
+      }
+      if (ovp == null) {
+        ovp = eventOptions.getString("ovp");
+      }
+    }
+    if (ovp == null) {
+      ovp = "unknown";
     }
 
-    playback = new PlaybackDelegate();
-    heartbeat = heartbeatFactory.get(playback, config);
-    sessionStarted = true;
+    HeartbeatPool.Key key = new HeartbeatPool.Key(channel, playerName, ovp, ssl, debug);
+    HeartbeatPool.Entry tracker = heartbeatPool.acquire(key);
+    if (tracker == null) {
+      PlaybackDelegate playback = new PlaybackDelegate(clock);
+      MediaHeartbeat heartbeat = heartbeatFactory.get(playback, heartbeatPool.getConfig(key));
+      tracker = new HeartbeatPool.Entry(key, playback, heartbeat);
+    }
+    MediaHeartbeat heartbeat = tracker.heartbeat;
+    VideoSession session =
+        new VideoSession(getSessionId(eventProperties), tracker, clock.elapsedMillis());
+
+    VideoSession previous = sessions.remove(session.getId());
+    if (previous != null) {
+      // The session was started again, the previous one can not receive events anymore.
+      endSession(previous);
+    }
+    if (sessions.size() >= MAX_SESSIONS) {
+      Iterator<VideoSession> oldest = sessions.values().iterator();
+      VideoSession evicted = oldest.next();
+      oldest.remove();
+      logger.verbose("Too many video sessions, ending session %s.", evicted.getId());
+      endSession(evicted);
+    }
+    sessions.put(session.getId(), session);
+    currentSession = session;
+    // The session times out unless its content starts playing.
+    if (sessionTimeoutMillis > 0) {
+      scheduleReaper(sessionTimeoutMillis);
+    }
 
-    VideoEvent event = new VideoEvent(track);
+    VideoEvent event = new VideoEvent(track, contextDataConfiguration);
 
     heartbeat.trackSessionStart(event.getMediaObject(), event.getContextData());
     logger.verbose("heartbeat.trackSessionStart(MediaObject);");
   }
 
-  private void trackVideoPlaybackPaused() {
-    playback.pausePlayhead();
-    heartbeat.trackPause();
+  /**
+   * Retrieves the session an event belongs to. Events that do not define a session id belong to the
+   * most recently started session.
+   *
+   * @param track Video event.
+   * @return The session, or <code>null</code> if it has not started or has already completed.
+   */
+  private VideoSession getSession(TrackPayload track) {
+    ValueMap properties = track.getValueMap("properties");
+    String id = properties != null ? getSessionId(properties) : DEFAULT_SESSION_ID;
+    if (id.equals(DEFAULT_SESSION_ID)) {
+      return currentSession;
+    }
+    return sessions.get(id);
+  }
+
+  private static String getSessionId(ValueMap properties) {
+    String id = properties.getString("session_id");
+    if (id == null) {
+      id = properties.getString("sessionId");
+    }
+    return id != null ? id : DEFAULT_SESSION_ID;
+  }
+
+  /**
+   * Ends a session. Its heartbeat is closed so it stops polling the playhead, and the session is
+   * removed so neither it nor its quality of service data stay reachable. The heartbeat is kept for
+   * reuse by a later session.
+   *
+   * @param session Session that completed, was replaced by a new one, or was idle for too long.
+   */
+  private void endSession(VideoSession session) {
+    removeSession(session);
+    flushHeldEvents(session);
+    session.getHeartbeat().trackSessionEnd();
+    logger.verbose("heartbeat.trackSessionEnd();");
+    QosAggregator qos = session.getPlayback().getQos();
+    logger.verbose(
+        "Video session %s buffered %s times for %sms, and seeked %s times.",
+        session.getId(), qos.getBufferCount(), qos.getBufferMillis(), qos.getSeekCount());
+    session.getPlayback().clearQosData();
+    heartbeatPool.release(session.getTracker());
+  }
+
+  /**
+   * Removes a session from the active sessions, if it is still active.
+   *
+   * @param session Ended session.
+   */
+  private void removeSession(VideoSession session) {
+    if (sessions.get(session.getId()) == session) {
+      sessions.remove(session.getId());
+    }
+    if (currentSession == session) {
+      currentSession = null;
+      // The most recently started session that is still active becomes the current one.
+      for (VideoSession active : sessions.values()) {
+        currentSession = active;
+      }
+    }
+    if (sessions.isEmpty() && reaperScheduled) {
+      reaperScheduled = false;
+      scheduler.cancel(reaper);
+    }
+    if (sessions.isEmpty() && flushScheduled) {
+      flushScheduled = false;
+      scheduler.cancel(flusher);
+    }
+  }
+
+  /**
+   * Ends the sessions that stopped playing longer than the session timeout ago, for example because
+   * the app discarded a paused player without completing its playback, and the sessions that stayed
+   * suspended longer than the background timeout. Checks again when the next session would time
+   * out.
+   *
+   * <p>Sessions that are playing do not time out, as their player may report no event for as long
+   * as the content lasts. They end when their playback completes or a new session replaces them.
+   */
+  void endIdleSessions() {
+    long now = clock.elapsedMillis();
+    long nextCheck = Long.MAX_VALUE;
+    List<VideoSession> idle = new ArrayList<>();
+    for (VideoSession session : sessions.values()) {
+      long remainingMillis = getRemainingMillis(session, now);
+      if (remainingMillis <= 0) {
+        idle.add(session);
+      } else {
+        nextCheck = Math.min(nextCheck, remainingMillis);
+      }
+    }
+    for (VideoSession session : idle) {
+      logger.verbose("Video session %s is idle, ending it.", session.getId());
+      endSession(session);
+    }
+    if (nextCheck != Long.MAX_VALUE) {
+      scheduleReaper(nextCheck);
+    }
+  }
+
+  /**
+   * Computes how long a session may stay stopped or in background before it is ended.
+   *
+   * @param session Active session.
+   * @param now Current clock time.
+   * @return Remaining time in milliseconds, <code>Long.MAX_VALUE</code> if it never times out.
+   */
+  private long getRemainingMillis(VideoSession session, long now) {
+    long remainingMillis = Long.MAX_VALUE;
+    if (sessionTimeoutMillis > 0 && !session.isPlaying()) {
+      remainingMillis = sessionTimeoutMillis - (now - session.getStoppedAtMillis());
+    }
+    if (session.isSuspended() && backgroundTimeoutMillis > 0) {
+      remainingMillis =
+          Math.min(
+              remainingMillis, backgroundTimeoutMillis - (now - session.getSuspendedAtMillis()));
+    }
+    return remainingMillis;
+  }
+
+  private void scheduleReaper(long delayMillis) {
+    long dueMillis = clock.elapsedMillis() + delayMillis;
+    if (reaperScheduled) {
+      if (reaperDueMillis <= dueMillis) {
+        return;
+      }
+      scheduler.cancel(reaper);
+    }
+    reaperScheduled = true;
+    reaperDueMillis = dueMillis;
+    scheduler.postDelayed(reaper, delayMillis);
+  }
+
+  /** Checks the timeouts again, after they changed. */
+  private void rescheduleReaper() {
+    if (reaperScheduled) {
+      reaperScheduled = false;
+      scheduler.cancel(reaper);
+    }
+    endIdleSessions();
+  }
+
+  /**
+   * Suspends the active sessions once the app is in background, so the heartbeats stop reporting
+   * playback: sessions that are playing are paused and their playhead frozen.
+   */
+  void suspendSessions() {
+    if (background) {
+      return;
+    }
+    background = true;
+    if (!suspendInBackground || sessions.isEmpty()) {
+      return;
+    }
+    long now = clock.elapsedMillis();
+    for (VideoSession session : sessions.values()) {
+      PlaybackDelegate playback = session.getPlayback();
+      boolean playing = !playback.isPaused();
+      session.suspend(now, playing);
+      flushHeldEvents(session);
+      if (playing) {
+        stopPlayback(session);
+        session.getHeartbeat().trackPause();
+        logger.verbose("heartbeat.trackPause();");
+      }
+    }
+    rescheduleReaper();
+  }
+
+  /**
+   * Resumes the suspended sessions once the app is in foreground. Sessions that stayed in
+   * background longer than the background timeout are ended instead, the others play again if they
+   * were playing when they were suspended.
+   */
+  void resumeSessions() {
+    if (!background) {
+      return;
+    }
+    background = false;
+    if (sessions.isEmpty()) {
+      return;
+    }
+    // The reaper may not have run while the app was in background.
+    rescheduleReaper();
+
+    long now = clock.elapsedMillis();
+    for (VideoSession session : sessions.values()) {
+      if (!session.isSuspended()) {
+        continue;
+      }
+      if (session.resume()) {
+        startPlayback(session);
+        session.getHeartbeat().trackPlay();
+        logger.verbose("heartbeat.trackPlay();");
+      }
+    }
+    rescheduleReaper();
+  }
+
+  /**
+   * Freezes the playhead of a session that stopped playing, and starts its session timeout.
+   *
+   * @param session Session that is paused, buffering or seeking.
+   */
+  private void stopPlayback(VideoSession session) {
+    session.getPlayback().pausePlayhead();
+    if (session.stop(clock.elapsedMillis()) && sessionTimeoutMillis > 0) {
+      scheduleReaper(sessionTimeoutMillis);
+    }
+  }
+
+  /**
+   * Resumes the playhead of a session that plays again, which then does not time out.
+   *
+   * @param session Session that plays.
+   */
+  private void startPlayback(VideoSession session) {
+    session.getPlayback().unPausePlayhead();
+    session.play();
+  }
+
+  private void trackVideoPlaybackPaused(VideoSession session) {
+    stopPlayback(session);
+    session.getHeartbeat().trackPause();
     logger.verbose("heartbeat.trackPause();");
   }
 
-  private void trackVideoPlaybackResumed() {
-    playback.unPausePlayhead();
-    heartbeat.trackPlay();
+  private void trackVideoPlaybackResumed(VideoSession session) {
+    startPlayback(session);
+    session.getHeartbeat().trackPlay();
     logger.verbose("heartbeat.trackPlay();");
   }
 
-  private void trackVideoContentStarted(TrackPayload track) {
-    VideoEvent event = new VideoEvent(track);
+  private void trackVideoContentStarted(
+      VideoSession session, TrackPayload track, ContextDataConfiguration contextDataConfiguration) {
+    VideoEvent event = new VideoEvent(track, contextDataConfiguration);
 
-    if (event.properties.getDouble("position", 0) > 0) {
-      playback.updatePlayheadPosition(event.properties.getLong("position", 0));
+    if (event.properties != null && event.properties.getDouble("position", 0) > 0) {
+      session.getPlayback().updatePlayheadPosition(event.properties.getDouble("position", 0));
     }
 
-    heartbeat.trackPlay();
+    session.getPlayback().getQos().contentStarted();
+    session.play();
+    session.getHeartbeat().trackPlay();
     logger.verbose("heartbeat.trackPlay();");
     trackAdobeEvent(
-        MediaHeartbeat.Event.ChapterStart, event.getChapterObject(), event.getContextData());
+        session,
+        MediaHeartbeat.Event.ChapterStart,
+        event.getChapterObject(),
+        event.getContextData());
   }
 
-  private void trackVideoContentCompleted() {
-    trackAdobeEvent(MediaHeartbeat.Event.ChapterComplete, null, null);
+  private void trackVideoContentCompleted(VideoSession session) {
+    trackAdobeEvent(session, MediaHeartbeat.Event.ChapterComplete, null, null);
   }
 
   //Upon playback complete, pause playhead, call trackComplete, and end session
-  private void trackVideoPlaybackCompleted() {
-    playback.pausePlayhead();
-    heartbeat.trackComplete();
+  private void trackVideoPlaybackCompleted(VideoSession session) {
+    session.getPlayback().pausePlayhead();
+    session.getHeartbeat().trackComplete();
     logger.verbose("heartbeat.trackComplete();");
-    heartbeat.trackSessionEnd();
-    logger.verbose("heartbeat.trackSessionEnd();");
+    endSession(session);
   }
 
-  private void trackVideoPlaybackBufferStarted() {
-    playback.pausePlayhead();
-    trackAdobeEvent(MediaHeartbeat.Event.BufferStart, null, null);
+  private void trackVideoPlaybackBufferStarted(VideoSession session) {
+    stopPlayback(session);
+    session.getPlayback().getQos().bufferStarted();
+    if (coalescingWindowMillis > 0) {
+      hold(session, VideoSession.HELD_BUFFER_START);
+    } else {
+      trackAdobeEvent(session, MediaHeartbeat.Event.BufferStart, null, null);
+    }
   }
 
-  private void trackVideoPlaybackBufferCompleted() {
-    playback.unPausePlayhead();
-    trackAdobeEvent(MediaHeartbeat.Event.BufferComplete, null, null);
+  private void trackVideoPlaybackBufferCompleted(VideoSession session) {
+    startPlayback(session);
+    session.getPlayback().getQos().bufferCompleted();
+    if (session.isHeld(VideoSession.HELD_BUFFER_START)) {
+      // Adobe never heard of this buffering.
+      session.drop(VideoSession.HELD_BUFFER_START);
+      logger.verbose("Dropped buffering shorter than the coalescing window.");
+      return;
+    }
+    flushHeldEvents(session);
+    trackAdobeEvent(session, MediaHeartbeat.Event.BufferComplete, null, null);
   }
 
   private void trackAdobeEvent(
-      MediaHeartbeat.Event eventName, MediaObject mediaObject, Map<String, String> cdata) {
-    heartbeat.trackEvent(eventName, mediaObject, cdata);
+      VideoSession session,
+      MediaHeartbeat.Event eventName,
+      MediaObject mediaObject,
+      Map<String, String> cdata) {
+    session.getHeartbeat().trackEvent(eventName, mediaObject, cdata);
     logger.verbose("heartbeat.trackEvent(%s, %s, %s);", eventName, mediaObject, cdata);
   }
 
-  private void trackVideoPlaybackSeekStarted() {
-    playback.pausePlayhead();
-    trackAdobeEvent(MediaHeartbeat.Event.SeekStart, null, null);
+  private void trackVideoPlaybackSeekStarted(VideoSession session) {
+    stopPlayback(session);
+    session.getPlayback().getQos().seekStarted();
+    if (session.isHeld(VideoSession.HELD_SEEK_COMPLETE)) {
+      // The seek Adobe was told about continues.
+      session.drop(VideoSession.HELD_SEEK_COMPLETE);
+      return;
+    }
+    flushHeldEvents(session);
+    trackAdobeEvent(session, MediaHeartbeat.Event.SeekStart, null, null);
   }
 
-  private void trackVideoPlaybackSeekCompleted(TrackPayload track) {
+  private void trackVideoPlaybackSeekCompleted(VideoSession session, TrackPayload track) {
     Properties seekProperties = track.properties();
-    long seekPosition = seekProperties.getLong("seekPosition", 0);
+    double seekPosition = seekProperties.getDouble("seekPosition", 0);
     if (seekPosition == 0) {
-      seekPosition = seekProperties.getLong("seek_position", 0);
+      seekPosition = seekProperties.getDouble("seek_position", 0);
+    }
+    session.getPlayback().updatePlayheadPosition(seekPosition);
+    startPlayback(session);
+    // Held events happened first.
+    flushHeldEvents(session);
+    if (coalescingWindowMillis > 0) {
+      hold(session, VideoSession.HELD_SEEK_COMPLETE);
+    } else {
+      trackAdobeEvent(session, MediaHeartbeat.Event.SeekComplete, null, null);
     }
-    playback.updatePlayheadPosition(seekPosition);
-    playback.unPausePlayhead();
-    trackAdobeEvent(MediaHeartbeat.Event.SeekComplete, null, null);
   }
 
-  private void trackVideoAdBreakStarted(TrackPayload track) {
-    VideoEvent event = new VideoEvent(track, true);
+  /**
+   * Whether an event plays, pauses or completes the playback, which overrides the playback state
+   * that a suspended session resumes with.
+   *
+   * @param event Video event.
+   * @return <code>true</code> for playback pause, resume, interruption and completion.
+   */
+  private static boolean isPlaybackStateChange(Event event) {
+    return event == Event.PlaybackPaused
+        || event == Event.PlaybackResumed
+        || event == Event.PlaybackInterrupted
+        || event == Event.PlaybackCompleted;
+  }
+
+  /**
+   * Whether an event may be held back by the coalescing window. Any other event reports the held
+   * events first.
+   *
+   * @param event Video event.
+   * @return <code>true</code> for seek and buffer events.
+   */
+  private static boolean isCoalesced(Event event) {
+    return event == Event.PlaybackSeekStarted
+        || event == Event.PlaybackSeekCompleted
+        || event == Event.PlaybackBufferStarted
+        || event == Event.PlaybackBufferCompleted;
+  }
+
+  /**
+   * Holds back a heartbeat event until the coalescing window elapses without another seek or buffer
+   * event, so a burst of them is reported as a single seek or not at all.
+   *
+   * @param session Session of the event.
+   * @param event <code>VideoSession.HELD_*</code> flag of the event.
+   */
+  private void hold(VideoSession session, int event) {
+    session.hold(event, clock.elapsedMillis());
+    if (!flushScheduled) {
+      flushScheduled = true;
+      scheduler.postDelayed(flusher, coalescingWindowMillis);
+    }
+  }
+
+  /**
+   * Reports the held events of the sessions whose coalescing window elapsed, and checks again when
+   * the next window would elapse.
+   */
+  void flushHeldEvents() {
+    long now = clock.elapsedMillis();
+    long nextCheck = Long.MAX_VALUE;
+    for (VideoSession session : sessions.values()) {
+      if (!session.hasHeldEvents()) {
+        continue;
+      }
+      long remainingMillis = coalescingWindowMillis - (now - session.getHeldSinceMillis());
+      if (remainingMillis <= 0) {
+        flushHeldEvents(session);
+      } else {
+        nextCheck = Math.min(nextCheck, remainingMillis);
+      }
+    }
+    if (nextCheck != Long.MAX_VALUE && !flushScheduled) {
+      flushScheduled = true;
+      scheduler.postDelayed(flusher, nextCheck);
+    }
+  }
+
+  /**
+   * Reports the held events of a session, in the order they happened.
+   *
+   * @param session Session.
+   */
+  private void flushHeldEvents(VideoSession session) {
+    if (!session.hasHeldEvents()) {
+      return;
+    }
+    int events = session.takeHeldEvents();
+    // A seek completion is only held when nothing else is, so it always happened first.
+    if ((events & VideoSession.HELD_SEEK_COMPLETE) != 0) {
+      trackAdobeEvent(session, MediaHeartbeat.Event.SeekComplete, null, null);
+    }
+    if ((events & VideoSession.HELD_BUFFER_START) != 0) {
+      trackAdobeEvent(session, MediaHeartbeat.Event.BufferStart, null, null);
+    }
+  }
+
+  private void trackVideoAdBreakStarted(
+      VideoSession session, TrackPayload track, ContextDataConfiguration contextDataConfiguration) {
+    VideoEvent event = new VideoEvent(track, true, contextDataConfiguration);
     trackAdobeEvent(
-        MediaHeartbeat.Event.AdBreakStart, event.getAdBreakObject(), event.getContextData());
+        session,
+        MediaHeartbeat.Event.AdBreakStart,
+        event.getAdBreakObject(),
+        event.getContextData());
   }
 
-  private void trackVideoAdBreakCompleted() {
-    trackAdobeEvent(MediaHeartbeat.Event.AdBreakComplete, null, null);
+  private void trackVideoAdBreakCompleted(VideoSession session) {
+    trackAdobeEvent(session, MediaHeartbeat.Event.AdBreakComplete, null, null);
   }
 
-  private void trackVideoAdStarted(TrackPayload track) {
-    VideoEvent event = new VideoEvent(track, true);
-    trackAdobeEvent(MediaHeartbeat.Event.AdStart, event.getAdObject(), event.getContextData());
+  private void trackVideoAdStarted(
+      VideoSession session, TrackPayload track, ContextDataConfiguration contextDataConfiguration) {
+    VideoEvent event = new VideoEvent(track, true, contextDataConfiguration);
+    trackAdobeEvent(
+        session, MediaHeartbeat.Event.AdStart, event.getAdObject(), event.getContextData());
   }
 
-  private void trackVideoAdSkipped() {
-    trackAdobeEvent(MediaHeartbeat.Event.AdSkip, null, null);
+  private void trackVideoAdSkipped(VideoSession session) {
+    trackAdobeEvent(session, MediaHeartbeat.Event.AdSkip, null, null);
   }
 
-  private void trackVideoAdCompleted() {
-    trackAdobeEvent(MediaHeartbeat.Event.AdComplete, null, null);
+  private void trackVideoAdCompleted(VideoSession session) {
+    trackAdobeEvent(session, MediaHeartbeat.Event.AdComplete, null, null);
   }
 
-  private void trackVideoPlaybackInterrupted() {
-    playback.pausePlayhead();
-    heartbeat.trackPause();
+  private void trackVideoPlaybackInterrupted(VideoSession session) {
+    stopPlayback(session);
+    session.getHeartbeat().trackPause();
     logger.verbose("heartbeat.trackPause();");
   }
 
-  private void trackVideoQualityUpdated(TrackPayload track) {
-    playback.createAndUpdateQosObject(track.properties());
+  private void trackVideoQualityUpdated(VideoSession session, TrackPayload track) {
+    session.getPlayback().updateQos(track.properties());
   }
 
+  /**
+   * @return Playhead of the most recently started session that is still active.
+   */
   PlaybackDelegate getPlayback() {
-    return playback;
+    return currentSession != null ? currentSession.getPlayback() : null;
+  }
+
+  /**
+   * Retrieves an active session.
+   *
+   * @param id Session id.
+   * @return The session, or <code>null</code> if it is not active.
+   */
+  VideoSession getSession(String id) {
+    return sessions.get(id);
+  }
+
+  int getSessionCount() {
+    return sessions.size();
+  }
+
+  /**
+   * Allows to redefine the clock used to measure playback. Only used for testing.
+   *
+   * @param clock Monotonic clock.
+   */
+  void setClock(Clock clock) {
+    this.clock = clock;
   }
 
   boolean isSessionStarted() {
-    return sessionStarted;
+    return !sessions.isEmpty();
+  }
+
+  /**
+   * Allows to redefine the scheduler of the idle session reaper. Only used for testing.
+   *
+   * @param scheduler Scheduler that runs tasks on the thread of the integration calls.
+   */
+  void setScheduler(Scheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Sets the time after which a session that stopped playing is ended and its heartbeat closed.
+   * Sessions that are playing never time out.
+   *
+   * @param timeoutMillis Session timeout in milliseconds, <code>0</code> never ends idle sessions.
+   */
+  void setSessionTimeout(long timeoutMillis) {
+    sessionTimeoutMillis = Math.max(0, timeoutMillis);
+    rescheduleReaper();
+  }
+
+  /**
+   * Sets how sessions are handled while the app is in background.
+   *
+   * @param suspend Whether sessions are suspended, disabled for apps that keep playing in
+   *     background.
+   * @param timeoutMillis Time in background after which a suspended session is ended, <code>0
+   *     </code> never ends them.
+   */
+  void setBackgroundPolicy(boolean suspend, long timeoutMillis) {
+    suspendInBackground = suspend;
+    backgroundTimeoutMillis = Math.max(0, timeoutMillis);
+    rescheduleReaper();
+  }
+
+  /**
+   * Sets the time during which seek and buffer events are held back, so bursts of them are
+   * coalesced: consecutive seeks are reported as a single one, and buffering that completes within
+   * the window is not reported. The playhead is always updated right away.
+   *
+   * @param windowMillis Coalescing window in milliseconds, <code>0</code> reports every event right
+   *     away.
+   */
+  void setCoalescingWindow(long windowMillis) {
+    coalescingWindowMillis = Math.max(0, windowMillis);
+    if (flushScheduled) {
+      flushScheduled = false;
+      scheduler.cancel(flusher);
+    }
+    flushHeldEvents();
   }
 
   void setDebugLogging(boolean debug) {
     this.debug = debug;
   }
 
+  /**
+   * Allows to redefine how many heartbeats of ended sessions are kept for reuse. Idle heartbeats
+   * are discarded.
+   *
+   * @param maxSize Maximum number of idle heartbeats, <code>0</code> disables reuse.
+   */
+  void setHeartbeatPoolSize(int maxSize) {
+    setHeartbeatPoolSize(maxSize, HeartbeatPool.MAX_CONFIGS);
+  }
+
+  /**
+   * Allows to redefine how many heartbeats and configurations are kept for reuse. Only used for
+   * testing and benchmarks.
+   *
+   * @param maxSize Maximum number of idle heartbeats, <code>0</code> disables reuse.
+   * @param maxConfigs Maximum number of cached configurations, <code>0</code> builds a new one for
+   *     every session.
+   */
+  void setHeartbeatPoolSize(int maxSize, int maxConfigs) {
+    heartbeatPool = new HeartbeatPool(heartbeatTrackingServerUrl, packageName, maxSize, maxConfigs);
+  }
+
+  HeartbeatPool getHeartbeatPool() {
+    return heartbeatPool;
+  }
+
   ContextDataConfiguration getContextDataConfiguration() {
-    return contextDataConfiguration;
+    return configuration.getContextDataConfiguration();
   }
 
   /**
@@ -413,22 +1044,25 @@ class VideoAnalytics {
    * @param contextDataConfiguration New context data configuration.
    */
   void setContextDataConfiguration(ContextDataConfiguration contextDataConfiguration) {
-    this.contextDataConfiguration = contextDataConfiguration;
+    configuration = configuration.withContextDataConfiguration(contextDataConfiguration);
   }
 
   /** A wrapper for video metadata and properties. */
   class VideoEvent {
     private Map<String, String> metadata;
-    private Properties properties;
+    private ValueMap properties;
     private BasePayload payload;
+    private boolean isAd;
+    private ContextDataConfiguration contextDataConfiguration;
 
     /**
      * Creates video properties from the ones provided in the event.
      *
      * @param payload Event Payload.
+     * @param contextDataConfiguration Context data configuration of the event.
      */
-    VideoEvent(BasePayload payload) {
-      this(payload, false);
+    VideoEvent(BasePayload payload, ContextDataConfiguration contextDataConfiguration) {
+      this(payload, false, contextDataConfiguration);
     }
 
     /**
@@ -436,110 +1070,62 @@ class VideoAnalytics {
      *
      * @param payload Event Payload.
      * @param isAd Determines if the video is an ad.
+     * @param contextDataConfiguration Context data configuration of the event.
      */
-    VideoEvent(BasePayload payload, boolean isAd) {
+    VideoEvent(
+        BasePayload payload, boolean isAd, ContextDataConfiguration contextDataConfiguration) {
       this.payload = payload;
+      this.isAd = isAd;
+      this.contextDataConfiguration = contextDataConfiguration;
       metadata = new HashMap<>();
-      properties = new Properties();
-      if (payload.containsKey("properties")) {
-        ValueMap eventProperties = payload.getValueMap("properties");
-        properties.putAll(eventProperties);
-
+      properties = payload.getValueMap("properties");
+      if (properties != null) {
         if (isAd) {
-          mapAdProperties(eventProperties);
+          mapAdProperties(properties);
         } else {
-          mapVideoProperties(eventProperties);
+          mapVideoProperties(properties);
         }
       }
     }
 
     private void mapVideoProperties(ValueMap eventProperties) {
-      for (String key : eventProperties.keySet()) {
-
-        if (VIDEO_METADATA_KEYS.containsKey(key)) {
-          String propertyKey = VIDEO_METADATA_KEYS.get(key);
-          metadata.put(propertyKey, String.valueOf(eventProperties.get(key)));
-          properties.remove(key);
+      for (Map.Entry<String, Object> entry : eventProperties.entrySet()) {
+        String propertyKey = VIDEO_METADATA_KEYS.get(entry.getKey());
+        if (propertyKey != null) {
+          metadata.put(propertyKey, String.valueOf(entry.getValue()));
         }
       }
 
-      if (properties.containsKey("livestream")) {
+      if (eventProperties.containsKey("livestream")) {
         String format = MediaHeartbeat.StreamType.LIVE;
-        if (!properties.getBoolean("livestream", false)) {
+        if (!eventProperties.getBoolean("livestream", false)) {
           format = MediaHeartbeat.StreamType.VOD;
         }
 
         metadata.put(MediaHeartbeat.VideoMetadataKeys.STREAM_FORMAT, format);
-        properties.remove("livestream");
       }
     }
 
     private void mapAdProperties(ValueMap eventProperties) {
-      for (String key : eventProperties.keySet()) {
-
-        if (AD_METADATA_KEYS.containsKey(key)) {
-          String propertyKey = AD_METADATA_KEYS.get(key);
-          metadata.put(propertyKey, String.valueOf(eventProperties.get(key)));
-          properties.remove(key);
+      for (Map.Entry<String, Object> entry : eventProperties.entrySet()) {
+        String propertyKey = AD_METADATA_KEYS.get(entry.getKey());
+        if (propertyKey != null) {
+          metadata.put(propertyKey, String.valueOf(entry.getValue()));
         }
       }
     }
 
     Map<String, String> getContextData() {
-
-      Properties extraProperties = new Properties();
-      extraProperties.putAll(properties);
-
-      // Remove products from extra properties
-      extraProperties.remove("products");
-
-      // Remove video metadata keys
-      for (String key : VIDEO_METADATA_KEYS.keySet()) {
-        extraProperties.remove(key);
-      }
-
-      // Remove ad metadata keys
-      for (String key : AD_METADATA_KEYS.keySet()) {
-        extraProperties.remove(key);
-      }
-
-      // Remove media object keys
-      for (String key :
-          new String[] {
-            "title",
-            "indexPosition",
-            "index_position",
-            "position",
-            "totalLength",
-            "total_length",
-            "startTime",
-            "start_time"
-          }) {
-        extraProperties.remove(key);
-      }
-
       Map<String, String> cdata = new HashMap<>();
 
-      for (String field : contextDataConfiguration.getEventFieldNames()) {
-        Object value = null;
-        try {
-          value = contextDataConfiguration.searchValue(field, payload);
-        } catch (IllegalArgumentException e) {
-          // Ignore.
-        }
-
-        if (value != null) {
-          String variable = contextDataConfiguration.getVariableName(field);
-          cdata.put(variable, String.valueOf(value));
-          extraProperties.remove(field);
-        }
-      }
-
-      // Add extra properties.
-      for (String extraProperty : extraProperties.keySet()) {
-        String variable = contextDataConfiguration.getPrefix() + extraProperty;
-        cdata.put(variable, extraProperties.getString(extraProperty));
-      }
+      // Products, metadata and media object keys are not sent as extra properties
+      ContextDataBuilder.build(
+          contextDataConfiguration,
+          payload,
+          properties,
+          isAd ? AD_RESERVED_KEYS : VIDEO_RESERVED_KEYS,
+          ContextDataBuilder.Format.STRING,
+          cdata);
 
       return cdata;
     }
@@ -652,7 +1238,7 @@ class VideoAnalytics {
       return metadata;
     }
 
-    Properties getProperties() {
+    ValueMap getProperties() {
       return properties;
     }
 
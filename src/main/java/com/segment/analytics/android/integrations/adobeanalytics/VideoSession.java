@@ -0,0 +1,176 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.adobe.primetime.va.simple.MediaHeartbeat;
+
+/**
+ * A single video session, started by a "Video Playback Started" event. Each session reports to
+ * Adobe through its own heartbeat and playhead, so several players can be tracked at once. Once the
+ * session ends, they may be reused by a later session.
+ */
+final class VideoSession {
+
+  /** A seek completion is held back, the seek may continue. */
+  static final int HELD_SEEK_COMPLETE = 1;
+  /** A buffering start is held back, the buffering may be too short to report. */
+  static final int HELD_BUFFER_START = 1 << 1;
+
+  private final String id;
+  private final HeartbeatPool.Entry tracker;
+  /** Whether the content of the session is playing, rather than paused, buffering or seeking. */
+  private boolean playing;
+  /** Clock time at which the session stopped playing, or started if it never played. */
+  private long stoppedAtMillis;
+  /** Whether the app went to background while the session was active. */
+  private boolean suspended;
+  /** Clock time at which the session was suspended. */
+  private long suspendedAtMillis;
+  /** Whether the session was playing when it was suspended, so it plays again once resumed. */
+  private boolean resumePlayback;
+  /** Heartbeat events held back by the coalescing window, <code>HELD_*</code> flags. */
+  private int heldEvents;
+  /** Clock time since which events are held. */
+  private long heldSinceMillis;
+
+  /**
+   * Creates a video session.
+   *
+   * @param id Session id, as defined in the <code>session_id</code> property.
+   * @param tracker Heartbeat that reports the session to Adobe, and the playhead it reads.
+   * @param startedAtMillis Clock time at which the session started, its content is not playing yet.
+   */
+  VideoSession(String id, HeartbeatPool.Entry tracker, long startedAtMillis) {
+    this.id = id;
+    this.tracker = tracker;
+    this.stoppedAtMillis = startedAtMillis;
+  }
+
+  String getId() {
+    return id;
+  }
+
+  PlaybackDelegate getPlayback() {
+    return tracker.playback;
+  }
+
+  MediaHeartbeat getHeartbeat() {
+    return tracker.heartbeat;
+  }
+
+  /** Records that the content of the session plays. */
+  void play() {
+    playing = true;
+  }
+
+  /**
+   * Records that the content of the session stopped playing. A session that was not playing keeps
+   * the time at which it stopped.
+   *
+   * @param nowMillis Clock time of the event.
+   * @return <code>true</code> if the session was playing.
+   */
+  boolean stop(long nowMillis) {
+    if (!playing) {
+      return false;
+    }
+    playing = false;
+    stoppedAtMillis = nowMillis;
+    return true;
+  }
+
+  boolean isPlaying() {
+    return playing;
+  }
+
+  long getStoppedAtMillis() {
+    return stoppedAtMillis;
+  }
+
+  /**
+   * Records that the app went to background.
+   *
+   * @param nowMillis Clock time of the transition.
+   * @param resumePlayback Whether the session was playing.
+   */
+  void suspend(long nowMillis, boolean resumePlayback) {
+    suspended = true;
+    suspendedAtMillis = nowMillis;
+    this.resumePlayback = resumePlayback;
+  }
+
+  /**
+   * Records that the app returned to foreground, or played the session again in background.
+   *
+   * @return <code>true</code> if the session was playing when it was suspended.
+   */
+  boolean resume() {
+    boolean playing = suspended && resumePlayback;
+    suspended = false;
+    resumePlayback = false;
+    return playing;
+  }
+
+  /**
+   * Records that the app changed the playback state of a suspended session, which is then left as
+   * it is when the session is resumed.
+   */
+  void keepPlaybackState() {
+    resumePlayback = false;
+  }
+
+  boolean isSuspended() {
+    return suspended;
+  }
+
+  long getSuspendedAtMillis() {
+    return suspendedAtMillis;
+  }
+
+  /**
+   * Holds back a heartbeat event.
+   *
+   * @param event <code>HELD_*</code> flag of the event.
+   * @param nowMillis Clock time of the event.
+   */
+  void hold(int event, long nowMillis) {
+    if (heldEvents == 0) {
+      heldSinceMillis = nowMillis;
+    }
+    heldEvents |= event;
+  }
+
+  boolean isHeld(int event) {
+    return (heldEvents & event) != 0;
+  }
+
+  /**
+   * Drops a held event, which will never be reported.
+   *
+   * @param event <code>HELD_*</code> flag of the event.
+   */
+  void drop(int event) {
+    heldEvents &= ~event;
+  }
+
+  /**
+   * Takes every held event, to report them.
+   *
+   * @return <code>HELD_*</code> flags of the events.
+   */
+  int takeHeldEvents() {
+    int events = heldEvents;
+    heldEvents = 0;
+    return events;
+  }
+
+  boolean hasHeldEvents() {
+    return heldEvents != 0;
+  }
+
+  long getHeldSinceMillis() {
+    return heldSinceMillis;
+  }
+
+  HeartbeatPool.Entry getTracker() {
+    return tracker;
+  }
+}
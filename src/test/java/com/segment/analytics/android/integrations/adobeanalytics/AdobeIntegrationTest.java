@@ -2,18 +2,29 @@ package com.segment.analytics.android.integrations.adobeanalytics;
 
 import android.app.Activity;
 import android.app.Application;
+import android.content.Context;
 import android.os.Bundle;
+import com.adobe.primetime.va.simple.MediaHeartbeat;
 import com.segment.analytics.Properties;
 import com.segment.analytics.Traits;
 import com.segment.analytics.ValueMap;
 import com.segment.analytics.integrations.IdentifyPayload;
+import com.segment.analytics.integrations.Integration;
 import com.segment.analytics.integrations.Logger;
 import com.segment.analytics.integrations.ScreenPayload;
 import com.segment.analytics.integrations.TrackPayload;
 import com.segment.analytics.Analytics.LogLevel;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -21,6 +32,8 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 
 public class AdobeIntegrationTest {
@@ -49,6 +62,61 @@ public class AdobeIntegrationTest {
     Assert.assertEquals(AdobeIntegration.FACTORY.key(), "Adobe Analytics");
   }
 
+  @Test
+  public void factoryWithOptions() {
+    Integration.Factory factory = AdobeIntegration.builder()
+        .asyncDispatch(10, AdobeIntegration.OverflowPolicy.BLOCK)
+        .videoSessionTimeout(5, TimeUnit.MINUTES)
+        .build();
+    Assert.assertEquals("Adobe Analytics", factory.key());
+  }
+
+  @Test
+  public void builderRejectsInvalidOptions() {
+    AdobeIntegration.Builder builder = AdobeIntegration.builder();
+    try {
+      builder.asyncDispatch(0, AdobeIntegration.OverflowPolicy.BLOCK);
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      builder.deferredInitialization(-1);
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      builder.videoBackgroundTimeout(-1, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void asyncDispatchOption() {
+    final Thread caller = Thread.currentThread();
+    final Thread[] callee = new Thread[1];
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        callee[0] = Thread.currentThread();
+        return null;
+      }
+    }).when(client).trackState(Mockito.eq("Home"), Mockito.<Map<String, Object>>any());
+
+    // The option is only read from the builder, never from the integration settings.
+    ValueMap settings = new ValueMap().putValue("asyncDispatch", false);
+    AdobeIntegration.Options options =
+        new AdobeIntegration.Options(AdobeIntegration.builder().asyncDispatch());
+    integration = new AdobeIntegration(settings, application, client, options,
+        Logger.with(LogLevel.NONE));
+
+    integration.screen(new ScreenPayload.Builder().userId("test-user").name("Home").build());
+
+    Mockito.verify(client, Mockito.timeout(1000)).trackState(Mockito.eq("Home"),
+        Mockito.<Map<String, Object>>any());
+    Assert.assertNotSame(caller, callee[0]);
+  }
+
   @Test
   public void initialize() {
     ValueMap settings = new ValueMap();
@@ -74,12 +142,29 @@ public class AdobeIntegrationTest {
     Mockito.verify(client).setContext(activity.getApplicationContext());
   }
 
+  @Test
+  public void activityCreateWithSameContext() {
+    Activity activity = Mockito.mock(Activity.class);
+    Mockito.when(activity.getApplicationContext()).thenReturn(application);
+    integration.onActivityCreated(activity, null);
+    integration.onActivityCreated(activity, null);
+
+    // Only set when the integration is created.
+    Mockito.verify(client).setContext(application);
+  }
+
   @Test
   public void activityPause() {
     Activity activity = Mockito.mock(Activity.class);
+    integration.onActivityStarted(activity);
+    integration.onActivityResumed(activity);
     integration.onActivityPaused(activity);
+    // The app may still show another activity.
+    Mockito.verify(client, Mockito.never()).pauseCollectingLifecycleData();
 
+    integration.onActivityStopped(activity);
     Mockito.verify(client).pauseCollectingLifecycleData();
+    Mockito.verify(videoAnalytics).suspendSessions();
   }
 
   @Test
@@ -88,6 +173,7 @@ public class AdobeIntegrationTest {
     integration.onActivityResumed(activity);
 
     Mockito.verify(client).collectLifecycleData(activity);
+    Mockito.verify(videoAnalytics).resumeSessions();
   }
 
   @Test
@@ -115,7 +201,7 @@ public class AdobeIntegrationTest {
 
     integration.track(payload);
 
-    Mockito.verify(videoAnalytics).track(payload);
+    Mockito.verify(videoAnalytics).track(Mockito.eq(payload), Mockito.eq(VideoAnalytics.Event.PlaybackStarted), Mockito.any(AdobeConfiguration.class));
   }
 
   @Test
@@ -127,7 +213,51 @@ public class AdobeIntegrationTest {
 
     integration.track(payload);
 
-    Mockito.verify(ecommerceAnalytics).track(payload);
+    Mockito.verify(ecommerceAnalytics).track(Mockito.eq(payload), Mockito.eq(EcommerceAnalytics.Event.ProductAdded), Mockito.any(AdobeConfiguration.class));
+  }
+
+  @Test
+  public void updateSettings() {
+    Map<String, Object> eventsMapping = new HashMap<>();
+    eventsMapping.put("Testing Event", "Adobe Testing Event");
+    ValueMap settings = new ValueMap();
+    settings.putValue("eventsV2", eventsMapping);
+    integration.updateSettings(settings);
+
+    TrackPayload payload = new TrackPayload.Builder()
+            .userId("test-user")
+            .event("Testing Event")
+            .build();
+    integration.track(payload);
+
+    Mockito.verify(client).trackAction("Adobe Testing Event", null);
+    // Video sessions and ecommerce state are kept.
+    Mockito.verifyZeroInteractions(videoAnalytics, ecommerceAnalytics);
+  }
+
+  @Test
+  public void inFlightEventKeepsSettings() {
+    final AdobeConfiguration previous = integration.getConfiguration();
+    final ValueMap settings = new ValueMap();
+    settings.putValue("productIdentifier", "sku");
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        // Settings are updated while the event is being tracked.
+        integration.updateSettings(settings);
+        return null;
+      }
+    }).when(ecommerceAnalytics).track(Mockito.any(TrackPayload.class), Mockito.any(EcommerceAnalytics.Event.class), Mockito.any(AdobeConfiguration.class));
+
+    TrackPayload payload = new TrackPayload.Builder()
+            .userId("test-user")
+            .event("Product Added")
+            .build();
+    integration.track(payload);
+
+    Mockito.verify(ecommerceAnalytics).track(payload, EcommerceAnalytics.Event.ProductAdded, previous);
+    Assert.assertNotSame(previous, integration.getConfiguration());
+    Assert.assertEquals("sku", integration.getConfiguration().getProductIdentifier());
   }
 
   @Test
@@ -247,6 +377,99 @@ public class AdobeIntegrationTest {
     Mockito.verify(client).trackState("Viewed a Screen", contextData);
   }
 
+  @Test
+  public void subsystemsCreatedOnFirstEvent() {
+    ValueMap settings = new ValueMap();
+    settings.putValue("heartbeatTrackingServerUrl", "https://www.heartbeatTrackingServerURL.com/");
+    integration = new AdobeIntegration(settings, application, client, Logger.with(LogLevel.NONE));
+    Assert.assertFalse(integration.isVideoCreated());
+    Assert.assertFalse(integration.isEcommerceCreated());
+
+    integration.track(new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Product Added")
+        .properties(new Properties().putValue("name", "shoes").putValue("product_id", "123"))
+        .build());
+    Assert.assertTrue(integration.isEcommerceCreated());
+    Assert.assertFalse(integration.isVideoCreated());
+    Mockito.verify(client).trackAction(Mockito.eq("scAdd"), Mockito.<Map<String, Object>>any());
+
+    integration.track(new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Video Playback Paused")
+        .build());
+    Assert.assertTrue(integration.isVideoCreated());
+  }
+
+  @Test
+  public void videoWaitsForDeferredInitialization() throws InterruptedException {
+    final CountDownLatch release = new CountDownLatch(1);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws InterruptedException {
+        release.await();
+        return null;
+      }
+    }).when(client).setContext(application);
+
+    ValueMap settings = new ValueMap();
+    settings.putValue("heartbeatTrackingServerUrl", "https://www.heartbeatTrackingServerURL.com/");
+    AdobeIntegration.Options options =
+        new AdobeIntegration.Options(AdobeIntegration.builder().deferredInitialization());
+    integration = new AdobeIntegration(settings, application, client, options,
+        Logger.with(LogLevel.NONE));
+    TrackPayload paused = new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Video Playback Paused")
+        .build();
+
+    // The heartbeat library is not used before Config.setContext() completes.
+    integration.track(paused);
+    Assert.assertFalse(integration.isVideoCreated());
+
+    release.countDown();
+    Assert.assertTrue(integration.getDeferredClient().awaitInitialization(5, TimeUnit.SECONDS));
+    integration.track(paused);
+    Assert.assertTrue(integration.isVideoCreated());
+  }
+
+  @Test
+  public void mediaHeartbeatNotLoadedBeforeFirstVideoEvent() throws Exception {
+    IsolatedClassLoader loader = new IsolatedClassLoader();
+    Class<?> clientType = loader.loadClass(AdobeAnalyticsClient.class.getName());
+    Object isolatedClient = Proxy.newProxyInstance(loader, new Class<?>[] {clientType},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+          }
+        });
+
+    ValueMap settings = new ValueMap();
+    settings.putValue("heartbeatTrackingServerUrl", "https://www.heartbeatTrackingServerURL.com/");
+    Constructor<?> constructor = loader.loadClass(AdobeIntegration.class.getName())
+        .getDeclaredConstructor(ValueMap.class, Context.class, clientType, Logger.class);
+    // Classes of another class loader belong to a different package.
+    constructor.setAccessible(true);
+    Integration<?> isolated = (Integration<?>) constructor
+        .newInstance(settings, application, isolatedClient, Logger.with(LogLevel.NONE));
+
+    isolated.screen(new ScreenPayload.Builder().userId("test-user").name("Home").build());
+    isolated.track(new TrackPayload.Builder().userId("test-user").event("Product Added").build());
+    isolated.track(new TrackPayload.Builder().userId("test-user").event("Video Playback Paused").build());
+    Assert.assertFalse(loader.isLoaded(MEDIA_HEARTBEAT));
+
+    try {
+      isolated.track(new TrackPayload.Builder()
+          .userId("test-user")
+          .event("Video Playback Started")
+          .build());
+    } catch (RuntimeException | LinkageError e) {
+      // The heartbeat library does not run outside of Android, it only needs to be loaded.
+    }
+    Assert.assertTrue(loader.isLoaded(MEDIA_HEARTBEAT));
+  }
+
   @Test
   public void group() {
   }
@@ -263,4 +486,45 @@ public class AdobeIntegrationTest {
     Mockito.verify(client).setUserIdentifier(null);
   }
 
+  private static final String MEDIA_HEARTBEAT = "com.adobe.primetime.va.simple.MediaHeartbeat";
+
+  /**
+   * Loads the integration and the Adobe libraries on its own, so the classes they load can be
+   * told apart from the ones loaded by other tests. Segment and Android classes are shared.
+   */
+  private static final class IsolatedClassLoader extends URLClassLoader {
+
+    IsolatedClassLoader() {
+      super(new URL[] {
+          location(AdobeIntegration.class),
+          location(MediaHeartbeat.class)
+      }, AdobeIntegrationTest.class.getClassLoader());
+    }
+
+    private static URL location(Class<?> type) {
+      return type.getProtectionDomain().getCodeSource().getLocation();
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.startsWith(AdobeIntegration.class.getPackage().getName() + ".")
+          && !name.startsWith("com.adobe.primetime.")) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> type = findLoadedClass(name);
+        if (type == null) {
+          type = findClass(name);
+        }
+        if (resolve) {
+          resolveClass(type);
+        }
+        return type;
+      }
+    }
+
+    boolean isLoaded(String name) {
+      return findLoadedClass(name) != null;
+    }
+  }
 }
@@ -0,0 +1,187 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.app.Application;
+
+import com.segment.analytics.Analytics.LogLevel;
+import com.segment.analytics.ValueMap;
+import com.segment.analytics.integrations.Logger;
+import com.segment.analytics.integrations.ScreenPayload;
+import com.segment.analytics.integrations.TrackPayload;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class AdobeMetricsTest {
+
+  @Mock private com.segment.analytics.Analytics analytics;
+  @Mock private Application application;
+  @Mock private AdobeAnalyticsClient client;
+  @Mock private VideoAnalytics videoAnalytics;
+  @Mock private EcommerceAnalytics ecommerceAnalytics;
+  private AdobeIntegration integration;
+  private RouteMetrics metrics;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    Mockito.when(analytics.getApplication()).thenReturn(application);
+
+    ValueMap settings = new ValueMap()
+        .putValue("eventsV2", Collections.singletonMap("Testing Event", "Adobe Testing Event"));
+    integration = new AdobeIntegration(settings, analytics, videoAnalytics, ecommerceAnalytics,
+        client, Logger.with(LogLevel.NONE));
+    metrics = new RouteMetrics(true);
+    integration.setMetrics(metrics);
+    Mockito.when(videoAnalytics.track(Mockito.any(TrackPayload.class), Mockito.eq(VideoAnalytics.Event.PlaybackStarted), Mockito.any(AdobeConfiguration.class))).thenReturn(true);
+  }
+
+  @After
+  public void tearDown() {
+    AdobeMetrics.setEnabled(false);
+  }
+
+  @Test
+  public void recordsRoutes() {
+    integration.track(new TrackPayload.Builder().userId("user").event("Testing Event").build());
+    integration.track(new TrackPayload.Builder().userId("user").event("Unmapped").build());
+    integration.track(new TrackPayload.Builder().userId("user").event("Unmapped").build());
+    integration.track(new TrackPayload.Builder().userId("user").event("Product Added").build());
+    integration.track(
+        new TrackPayload.Builder().userId("user").event("Video Playback Started").build());
+    integration.track(
+        new TrackPayload.Builder().userId("user").event("Video Playback Paused").build());
+    integration.screen(new ScreenPayload.Builder().userId("user").name("Home").build());
+    integration.onActivityResumed(Mockito.mock(Activity.class));
+    integration.onActivityPaused(Mockito.mock(Activity.class));
+    integration.flush();
+
+    Map<String, AdobeMetrics.RouteSnapshot> snapshot = metrics.snapshot();
+    Assert.assertEquals(1, snapshot.get("track.action").getCount());
+    Assert.assertEquals(2, snapshot.get("track.unmapped").getCount());
+    Assert.assertEquals(0, snapshot.get("track.unsupported").getCount());
+    Assert.assertEquals(1, snapshot.get("ecommerce.Product Added").getCount());
+    Assert.assertEquals(0, snapshot.get("ecommerce.Order Completed").getCount());
+    Assert.assertEquals(1, snapshot.get("video.Video Playback Started").getCount());
+    Assert.assertEquals(0, snapshot.get("video.Video Playback Paused").getCount());
+    Assert.assertEquals(1, snapshot.get("video.dropped").getCount());
+    Assert.assertEquals(1, snapshot.get("screen").getCount());
+    Assert.assertEquals(2, snapshot.get("lifecycle").getCount());
+    Assert.assertEquals(1, snapshot.get("flush").getCount());
+  }
+
+  @Test
+  public void instrumentedClient() {
+    AdobeAnalyticsClient instrumented = new InstrumentedAdobeAnalyticsClient(client, metrics);
+
+    instrumented.trackAction("Action", null);
+    instrumented.trackState("State", null);
+    instrumented.trackState("State", null);
+
+    Mockito.verify(client).trackAction("Action", null);
+    Mockito.verify(client, Mockito.times(2)).trackState("State", null);
+    Map<String, AdobeMetrics.RouteSnapshot> snapshot = metrics.snapshot();
+    Assert.assertEquals(1, snapshot.get("client.trackAction").getCount());
+    Assert.assertEquals(2, snapshot.get("client.trackState").getCount());
+  }
+
+  @Test
+  public void histogram() {
+    long now = System.nanoTime();
+    metrics.record(RouteMetrics.Route.SCREEN, now);
+    metrics.record(RouteMetrics.Route.SCREEN, now - 3000000L);
+    metrics.record(RouteMetrics.Route.SCREEN, now - 3000000000L);
+
+    AdobeMetrics.RouteSnapshot screen = metrics.snapshot().get("screen");
+    long[] bounds = screen.getBucketUpperBoundsNanos();
+    long[] counts = screen.getBucketCounts();
+    Assert.assertEquals(bounds.length, counts.length);
+    Assert.assertEquals(Long.MAX_VALUE, bounds[bounds.length - 1]);
+    Assert.assertEquals(1, counts[counts.length - 1]);
+    Assert.assertEquals(3, screen.getCount());
+    Assert.assertTrue(screen.getTotalNanos() >= 3003000000L);
+    Assert.assertEquals(5000000L, screen.getPercentileNanos(50));
+    Assert.assertEquals(Long.MAX_VALUE, screen.getPercentileNanos(99));
+    Assert.assertEquals(0, metrics.snapshot().get("flush").getPercentileNanos(99));
+  }
+
+  @Test
+  public void disabledByDefault() {
+    Assert.assertFalse(AdobeMetrics.isEnabled());
+    Assert.assertFalse(AdobeMetrics.getRecorder().isEnabled());
+    Assert.assertTrue(AdobeMetrics.snapshot().isEmpty());
+
+    AdobeMetrics.setEnabled(true);
+    Assert.assertTrue(AdobeMetrics.isEnabled());
+    Assert.assertTrue(AdobeMetrics.getRecorder().isEnabled());
+    Assert.assertEquals(0, AdobeMetrics.snapshot().get("screen").getCount());
+  }
+
+  @Test
+  public void togglingAppliesToExistingIntegrations() {
+    integration = new AdobeIntegration(new ValueMap(), analytics, videoAnalytics,
+        ecommerceAnalytics, client, Logger.with(LogLevel.NONE));
+    ScreenPayload screen = new ScreenPayload.Builder().userId("user").name("Home").build();
+
+    integration.screen(screen);
+    Assert.assertTrue(AdobeMetrics.snapshot().isEmpty());
+
+    AdobeMetrics.setEnabled(true);
+    integration.screen(screen);
+    Assert.assertEquals(1, AdobeMetrics.snapshot().get("screen").getCount());
+
+    AdobeMetrics.setEnabled(false);
+    integration.screen(screen);
+    AdobeMetrics.setEnabled(true);
+    Assert.assertEquals(0, AdobeMetrics.snapshot().get("screen").getCount());
+    integration.screen(screen);
+    Assert.assertEquals(1, AdobeMetrics.snapshot().get("screen").getCount());
+  }
+
+  @Test
+  public void callsStartedWhileDisabledAreIgnored() {
+    RouteMetrics metrics = new RouteMetrics(false);
+    long start = metrics.start();
+    metrics.setEnabled(true);
+    metrics.record(RouteMetrics.Route.SCREEN, start);
+
+    Assert.assertEquals(RouteMetrics.NOT_STARTED, start);
+    Assert.assertEquals(0, metrics.snapshot().get("screen").getCount());
+  }
+
+  @Test
+  public void concurrentRecording() throws InterruptedException {
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            metrics.record(RouteMetrics.Route.SCREEN, System.nanoTime() - 1500);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    AdobeMetrics.RouteSnapshot screen = metrics.snapshot().get("screen");
+    long buckets = 0;
+    for (long count : screen.getBucketCounts()) {
+      buckets += count;
+    }
+    Assert.assertEquals(8000, screen.getCount());
+    Assert.assertEquals(8000, buckets);
+    Assert.assertTrue(screen.getTotalNanos() >= 8000 * 1500L);
+  }
+}
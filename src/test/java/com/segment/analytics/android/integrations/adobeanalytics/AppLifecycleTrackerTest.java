@@ -0,0 +1,101 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+
+import com.segment.analytics.Analytics.LogLevel;
+import com.segment.analytics.integrations.Logger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class AppLifecycleTrackerTest {
+
+  @Mock private AdobeAnalyticsClient client;
+  @Mock private Activity first;
+  @Mock private Activity second;
+  @Mock private AppLifecycleTracker.Listener listener;
+  private TestScheduler scheduler;
+  private AppLifecycleTracker tracker;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    scheduler = new TestScheduler();
+    LifecycleDispatcher lifecycle =
+        new LifecycleDispatcher(client, LifecycleDispatcher.DIRECT_EXECUTOR, null);
+    tracker = new AppLifecycleTracker(lifecycle, scheduler, 700, listener, Logger.with(LogLevel.NONE));
+  }
+
+  @Test
+  public void activityTransitionsAreCoalesced() {
+    open(first);
+    for (int i = 0; i < 10; i++) {
+      // Going back and forth between two screens: the previous one is stopped last.
+      tracker.activityPaused();
+      tracker.activityStarted();
+      tracker.activityResumed(i % 2 == 0 ? second : first);
+      tracker.activityStopped(false);
+    }
+
+    Mockito.verify(client).collectLifecycleData(first);
+    Mockito.verifyNoMoreInteractions(client);
+    Mockito.verify(listener).onForeground();
+    Mockito.verifyNoMoreInteractions(listener);
+    Assert.assertTrue(tracker.isForeground());
+    Assert.assertFalse(scheduler.hasPendingTask());
+  }
+
+  @Test
+  public void backgroundAfterDebounceWindow() {
+    open(first);
+    tracker.activityPaused();
+    Mockito.verify(client, Mockito.never()).pauseCollectingLifecycleData();
+
+    scheduler.runPendingTask();
+    Mockito.verify(client).pauseCollectingLifecycleData();
+    Assert.assertFalse(tracker.isForeground());
+
+    tracker.activityResumed(first);
+    InOrder inOrder = Mockito.inOrder(client, listener);
+    inOrder.verify(client).collectLifecycleData(first);
+    inOrder.verify(listener).onForeground();
+    inOrder.verify(client).pauseCollectingLifecycleData();
+    inOrder.verify(listener).onBackground();
+    inOrder.verify(client).collectLifecycleData(first);
+    inOrder.verify(listener).onForeground();
+  }
+
+  @Test
+  public void backgroundWhenLastActivityStops() {
+    open(first);
+    tracker.activityPaused();
+    tracker.activityStopped(false);
+
+    Mockito.verify(client).pauseCollectingLifecycleData();
+    Mockito.verify(listener).onBackground();
+    Assert.assertFalse(scheduler.hasPendingTask());
+    Assert.assertFalse(tracker.isForeground());
+  }
+
+  @Test
+  public void rotationWaitsForDebounceWindow() {
+    open(first);
+    tracker.activityPaused();
+    tracker.activityStopped(true);
+    open(first);
+
+    Mockito.verify(client).collectLifecycleData(first);
+    Mockito.verifyNoMoreInteractions(client);
+    Assert.assertFalse(scheduler.hasPendingTask());
+  }
+
+  private void open(Activity activity) {
+    tracker.activityStarted();
+    tracker.activityResumed(activity);
+  }
+}
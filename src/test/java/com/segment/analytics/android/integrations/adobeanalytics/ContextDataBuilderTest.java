@@ -0,0 +1,140 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.Properties;
+import com.segment.analytics.ValueMap;
+import com.segment.analytics.integrations.TrackPayload;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class ContextDataBuilderTest {
+
+  @Test
+  public void buildRaw() {
+    Map<String, String> variables = new HashMap<>();
+    variables.put("testing", "myapp.testing");
+    variables.put(".context.library", "myapp.library");
+    variables.put("date.year", "myapp.year");
+    ContextDataConfiguration config = new ContextDataConfiguration("myapp.", variables);
+
+    ValueMap date = new ValueMap().putValue("year", 2018);
+    TrackPayload payload = new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Testing Event")
+        .context(new ValueMap().putValue("library", "Android"))
+        .properties(new Properties()
+            .putValue("testing", "testing value")
+            .putValue("count", 3)
+            .putValue("date", date)
+            .putValue("products", "ignored"))
+        .build();
+
+    Map<String, Object> contextData = new HashMap<>();
+    ContextDataBuilder.build(config, payload, payload.properties(),
+        ContextDataBuilder.DEFAULT_RESERVED_KEYS, ContextDataBuilder.Format.RAW, contextData);
+
+    Map<String, Object> expected = new HashMap<>();
+    expected.put("myapp.testing", "testing value");
+    expected.put("myapp.library", "Android");
+    expected.put("myapp.year", 2018);
+    expected.put("myapp.count", 3);
+    expected.put("myapp.date", date);
+    Assert.assertEquals(expected, contextData);
+  }
+
+  @Test
+  public void buildMappedAsString() {
+    Map<String, String> variables = new HashMap<>();
+    variables.put("count", "myapp.count");
+    ContextDataConfiguration config = new ContextDataConfiguration("", variables);
+
+    TrackPayload payload = new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Testing Event")
+        .properties(new Properties().putValue("count", 3).putValue("extra", 4))
+        .build();
+
+    Map<String, Object> contextData = new HashMap<>();
+    ContextDataBuilder.build(config, payload, payload.properties(),
+        Collections.<String>emptySet(), ContextDataBuilder.Format.MAPPED_AS_STRING, contextData);
+
+    Map<String, Object> expected = new HashMap<>();
+    expected.put("myapp.count", "3");
+    expected.put("extra", 4);
+    Assert.assertEquals(expected, contextData);
+  }
+
+  @Test
+  public void buildString() {
+    Map<String, String> variables = new HashMap<>();
+    variables.put("count", "myapp.count");
+    variables.put("missing", "myapp.missing");
+    ContextDataConfiguration config = new ContextDataConfiguration("", variables);
+
+    TrackPayload payload = new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Testing Event")
+        .properties(new Properties()
+            .putValue("count", 3)
+            .putValue("extra", 4)
+            .putValue("title", "reserved"))
+        .build();
+
+    Set<String> reservedKeys = new HashSet<>();
+    reservedKeys.add("title");
+
+    Map<String, String> contextData = new HashMap<>();
+    ContextDataBuilder.build(config, payload, payload.properties(), reservedKeys,
+        ContextDataBuilder.Format.STRING, contextData);
+
+    Map<String, String> expected = new HashMap<>();
+    expected.put("myapp.count", "3");
+    expected.put("extra", "4");
+    Assert.assertEquals(expected, contextData);
+  }
+
+  @Test
+  public void buildWithoutProperties() {
+    Map<String, String> variables = new HashMap<>();
+    variables.put("testing", "myapp.testing");
+    variables.put(".userId", "myapp.user");
+    ContextDataConfiguration config = new ContextDataConfiguration("myapp.", variables);
+
+    TrackPayload payload = new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Testing Event")
+        .build();
+
+    Map<String, Object> contextData = new HashMap<>();
+    ContextDataBuilder.build(config, payload, payload.getValueMap("properties"),
+        ContextDataBuilder.DEFAULT_RESERVED_KEYS, ContextDataBuilder.Format.RAW, contextData);
+
+    Assert.assertEquals(Collections.<String, Object>singletonMap("myapp.user", "test-user"),
+        contextData);
+  }
+
+  @Test
+  public void buildKeepsMappedPropertiesWithoutValue() {
+    Map<String, String> variables = new HashMap<>();
+    variables.put("testing", "myapp.testing");
+    ContextDataConfiguration config = new ContextDataConfiguration("", variables);
+
+    TrackPayload payload = new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Testing Event")
+        .properties(new Properties().putValue("testing", null))
+        .build();
+
+    Map<String, Object> contextData = new HashMap<>();
+    ContextDataBuilder.build(config, payload, payload.properties(),
+        ContextDataBuilder.DEFAULT_RESERVED_KEYS, ContextDataBuilder.Format.RAW, contextData);
+
+    Assert.assertEquals(Collections.<String, Object>singletonMap("testing", null), contextData);
+  }
+}
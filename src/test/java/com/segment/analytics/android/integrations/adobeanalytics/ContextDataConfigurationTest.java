@@ -7,7 +7,9 @@ import com.segment.analytics.integrations.TrackPayload;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ContextDataConfigurationTest {
@@ -90,14 +92,7 @@ public class ContextDataConfigurationTest {
 
 
         for (String invalidField : new String[]{"..an..onymousId", ".context.library.    ."}) {
-            IllegalArgumentException e = null;
-            try {
-                config.searchValue(invalidField, payload);
-            } catch (IllegalArgumentException ex) {
-                e = ex;
-            }
-
-            Assert.assertNotNull(e);
+            Assert.assertNull(config.searchValue(invalidField, payload));
         }
 
     }
@@ -121,4 +116,141 @@ public class ContextDataConfigurationTest {
         }
 
     }
+
+    @Test
+    public void compiledFieldsMatchSearchValue() {
+        // Values resolved by the original searchValue implementation for the same payload.
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("field1", "a");
+        expected.put("field2.id", "1");
+        expected.put("field3", null);
+        expected.put("field4.id", null);
+        expected.put("field5.missing", null);
+        expected.put(".anonymousId", "test-user");
+        expected.put(".context.library", "android");
+        expected.put(".context.device", null);
+        expected.put(".context.library.name", null);
+        expected.put("nested.map.value", "plain map");
+        expected.put("nested.map.missing", null);
+        expected.put("nested.missing.value", null);
+
+        Map<String, String> contextDataVariables = new HashMap<>();
+        for (String field : expected.keySet()) {
+            contextDataVariables.put(field, "myapp." + field);
+        }
+        ContextDataConfiguration config = new ContextDataConfiguration("", contextDataVariables);
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("value", "plain map");
+
+        TrackPayload payload = new TrackPayload.Builder()
+                .event("event")
+                .anonymousId("test-user")
+                .context(new ValueMap().putValue("library", "android"))
+                .properties(new Properties()
+                        .putValue("field1", "a")
+                        .putValue("field2", new ValueMap().putValue("id", "1"))
+                        .putValue("field4", 3)
+                        .putValue("field5", new ValueMap().putValue("other", "b"))
+                        .putValue("nested", new ValueMap().putValue("map", map))).build();
+
+        Assert.assertEquals(contextDataVariables.size(), config.getFields().size());
+
+        ValueMap properties = payload.getValueMap("properties");
+        for (ContextDataConfiguration.Field field : config.getFields()) {
+            String name = field.getName();
+            Assert.assertEquals(contextDataVariables.get(name), field.getVariable());
+            Assert.assertEquals(name, expected.get(name), field.getValue(properties, payload));
+            Assert.assertEquals(name, expected.get(name), config.searchValue(name, payload));
+        }
+    }
+
+    @Test
+    public void compiledFieldsStopAtNonMapValues() {
+        TrackPayload payload = new TrackPayload.Builder()
+                .event("event")
+                .anonymousId("test-user")
+                .properties(new Properties()
+                        .putValue("field1", "a")
+                        .putValue("field4", 3)).build();
+        ContextDataConfiguration config =
+                new ContextDataConfiguration("", new HashMap<String, String>());
+
+        // The original implementation kept searching the enclosing map past a non-map value, and
+        // resolved "field4.field1" to the sibling "field1". A path through a non-map value is now
+        // missing instead.
+        Assert.assertNull(config.searchValue("field4.field1", payload));
+        Assert.assertNull(config.searchValue("field1.length", payload));
+        Assert.assertNull(config.searchValue(".anonymousId.length", payload));
+    }
+
+    @Test
+    public void compiledFieldsWithoutProperties() {
+        Map<String, String> contextDataVariables = new HashMap<>();
+        contextDataVariables.put("field1", "myapp.field1");
+        contextDataVariables.put(".anonymousId", "myapp.anonymousId");
+        ContextDataConfiguration config = new ContextDataConfiguration("", contextDataVariables);
+
+        TrackPayload payload = new TrackPayload.Builder()
+                .event("event")
+                .anonymousId("test-user")
+                .build();
+
+        Map<String, Object> values = new HashMap<>();
+        for (ContextDataConfiguration.Field field : config.getFields()) {
+            values.put(field.getName(), field.getValue(payload.getValueMap("properties"), payload));
+        }
+
+        Assert.assertNull(values.get("field1"));
+        Assert.assertEquals("test-user", values.get(".anonymousId"));
+        Assert.assertNull(config.searchValue("field1", payload));
+    }
+
+    @Test
+    public void compiledFieldsSkipInvalidFields() {
+        Map<String, String> contextDataVariables = new HashMap<>();
+        contextDataVariables.put("..an..onymousId", "myapp.invalid");
+        contextDataVariables.put(".context.library.    .", "myapp.invalid");
+        contextDataVariables.put(".", "myapp.invalid");
+        contextDataVariables.put(" ", "myapp.invalid");
+        contextDataVariables.put("field1", "myapp.field1");
+        ContextDataConfiguration config = new ContextDataConfiguration("", contextDataVariables);
+
+        List<String> names = new ArrayList<>();
+        for (ContextDataConfiguration.Field field : config.getFields()) {
+            names.add(field.getName());
+        }
+
+        Assert.assertEquals(1, names.size());
+        Assert.assertEquals("field1", names.get(0));
+        Assert.assertEquals(contextDataVariables, config.getContextDataVariables());
+        Assert.assertEquals(4, config.getInvalidFieldNames().size());
+        Assert.assertFalse(config.getInvalidFieldNames().contains("field1"));
+    }
+
+    @Test
+    public void prefixedNames() {
+        ContextDataConfiguration config = new ContextDataConfiguration("myapp.", new HashMap<String, String>());
+
+        String name = config.getPrefixedName("count");
+        Assert.assertEquals("myapp.count", name);
+        Assert.assertSame(name, config.getPrefixedName(new String("count")));
+        Assert.assertEquals(1, config.getPrefixedNameCount());
+        Assert.assertTrue(config.getPrefixedNamesMemoryUsage() > 0);
+
+        for (int i = 0; i < ContextDataConfiguration.MAX_PREFIXED_NAMES * 2; i++) {
+            Assert.assertEquals("myapp.key" + i, config.getPrefixedName("key" + i));
+        }
+        Assert.assertEquals(ContextDataConfiguration.MAX_PREFIXED_NAMES, config.getPrefixedNameCount());
+    }
+
+    @Test
+    public void prefixedNamesWithoutPrefix() {
+        ContextDataConfiguration config = new ContextDataConfiguration(null, new HashMap<String, String>());
+
+        String key = "count";
+        Assert.assertSame(key, config.getPrefixedName(key));
+        Assert.assertEquals(0, config.getPrefixedNameCount());
+        Assert.assertEquals(0, config.getPrefixedNamesMemoryUsage());
+    }
 }
@@ -0,0 +1,153 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.content.Context;
+
+import com.segment.analytics.Analytics.LogLevel;
+import com.segment.analytics.integrations.Logger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DeferredAdobeAnalyticsClientTest {
+
+  @Mock private AdobeAnalyticsClient delegate;
+  @Mock private Context context;
+  @Mock private Activity activity;
+  private DeferredAdobeAnalyticsClient client;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+  }
+
+  @Test
+  public void buffersUntilStarted() throws InterruptedException {
+    client = new DeferredAdobeAnalyticsClient(delegate, 10, Logger.with(LogLevel.NONE));
+
+    client.setDebugLogging(true);
+    client.setContext(context);
+    client.trackState("Home", null);
+    Mockito.verifyZeroInteractions(delegate);
+    Assert.assertFalse(client.isReady());
+
+    client.start();
+    Assert.assertTrue(client.awaitInitialization(5, TimeUnit.SECONDS));
+    Assert.assertTrue(client.isReady());
+
+    InOrder inOrder = Mockito.inOrder(delegate);
+    inOrder.verify(delegate).setDebugLogging(true);
+    inOrder.verify(delegate).setContext(context);
+    inOrder.verify(delegate).trackState("Home", null);
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void replaysCallsMadeDuringInitialization() throws InterruptedException {
+    client = new DeferredAdobeAnalyticsClient(delegate, 10, Logger.with(LogLevel.NONE));
+    final CountDownLatch initializing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws InterruptedException {
+        // Adobe reads its configuration while the app keeps tracking events.
+        initializing.countDown();
+        release.await();
+        return null;
+      }
+    }).when(delegate).setContext(context);
+
+    client.setContext(context);
+    client.start();
+    Assert.assertTrue(initializing.await(5, TimeUnit.SECONDS));
+
+    client.collectLifecycleData(activity);
+    client.setUserIdentifier("user");
+    client.trackAction("Clicked", null);
+    client.flushQueue();
+    Assert.assertFalse(client.isReady());
+    release.countDown();
+    Assert.assertTrue(client.awaitInitialization(5, TimeUnit.SECONDS));
+
+    // Calls are made directly once initialized.
+    client.pauseCollectingLifecycleData();
+
+    InOrder inOrder = Mockito.inOrder(delegate);
+    inOrder.verify(delegate).setContext(context);
+    inOrder.verify(delegate).collectLifecycleData(activity);
+    inOrder.verify(delegate).setUserIdentifier("user");
+    inOrder.verify(delegate).trackAction("Clicked", null);
+    inOrder.verify(delegate).flushQueue();
+    inOrder.verify(delegate).pauseCollectingLifecycleData();
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void readyListenerRunsAfterReplay() throws InterruptedException {
+    client = new DeferredAdobeAnalyticsClient(delegate, 10, Logger.with(LogLevel.NONE));
+    final CountDownLatch listened = new CountDownLatch(1);
+    final boolean[] ready = new boolean[1];
+    client.setReadyListener(new Runnable() {
+      @Override
+      public void run() {
+        ready[0] = client.isReady();
+        Mockito.verify(delegate).setContext(context);
+        Mockito.verify(delegate).trackState("Home", null);
+        listened.countDown();
+      }
+    });
+
+    client.setContext(context);
+    client.trackState("Home", null);
+    client.start();
+
+    Assert.assertTrue(listened.await(5, TimeUnit.SECONDS));
+    Assert.assertTrue(ready[0]);
+  }
+
+  @Test
+  public void fullBufferDropsOldestHit() throws InterruptedException {
+    client = new DeferredAdobeAnalyticsClient(delegate, 3, Logger.with(LogLevel.NONE));
+
+    client.setContext(context);
+    client.trackAction("First", null);
+    client.trackAction("Second", null);
+    client.trackAction("Third", null);
+    // Configuration calls are never dropped, they take the place of a hit.
+    client.setUserIdentifier("user");
+    Assert.assertEquals(2, client.getDroppedHits());
+
+    client.start();
+    Assert.assertTrue(client.awaitInitialization(5, TimeUnit.SECONDS));
+
+    InOrder inOrder = Mockito.inOrder(delegate);
+    inOrder.verify(delegate).setContext(context);
+    inOrder.verify(delegate).trackAction("Third", null);
+    inOrder.verify(delegate).setUserIdentifier("user");
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void failedCallDoesNotStopReplay() throws InterruptedException {
+    client = new DeferredAdobeAnalyticsClient(delegate, 10, Logger.with(LogLevel.NONE));
+    Mockito.doThrow(new IllegalStateException("Missing configuration"))
+        .when(delegate).setContext(context);
+
+    client.setContext(context);
+    client.trackAction("Clicked", null);
+    client.start();
+
+    Assert.assertTrue(client.awaitInitialization(5, TimeUnit.SECONDS));
+    Mockito.verify(delegate).trackAction("Clicked", null);
+  }
+}
@@ -0,0 +1,229 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.content.Context;
+
+import com.segment.analytics.Analytics.LogLevel;
+import com.segment.analytics.integrations.Logger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DispatchingAdobeAnalyticsClientTest {
+
+  @Mock private AdobeAnalyticsClient delegate;
+  @Mock private Context context;
+  @Mock private Activity activity;
+  private DispatchingAdobeAnalyticsClient client;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+  }
+
+  @After
+  public void tearDown() {
+    if (client != null) {
+      client.shutdown();
+    }
+  }
+
+  @Test
+  public void forwardsCallsInOrder() {
+    client = create(10, AdobeIntegration.OverflowPolicy.BLOCK);
+    Map<String, Object> contextData = new HashMap<>();
+    contextData.put("myapp.testing", "testing value");
+
+    client.setContext(context);
+    client.setDebugLogging(true);
+    client.setUserIdentifier("user");
+    client.collectLifecycleData(activity);
+    client.trackState("Home", null);
+    client.trackAction("Clicked", contextData);
+    client.pauseCollectingLifecycleData();
+    client.flushQueue();
+    awaitFlushed();
+
+    InOrder inOrder = Mockito.inOrder(delegate);
+    inOrder.verify(delegate).setContext(context);
+    inOrder.verify(delegate).setDebugLogging(true);
+    inOrder.verify(delegate).setUserIdentifier("user");
+    inOrder.verify(delegate).collectLifecycleData(activity);
+    inOrder.verify(delegate).trackState("Home", null);
+    inOrder.verify(delegate).trackAction("Clicked", contextData);
+    inOrder.verify(delegate).pauseCollectingLifecycleData();
+    inOrder.verify(delegate).flushQueue();
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void flushDrainsQueue() {
+    client = create(1000, AdobeIntegration.OverflowPolicy.BLOCK);
+
+    for (int i = 0; i < 500; i++) {
+      client.trackAction("Action " + i, null);
+    }
+    client.flushQueue();
+    awaitFlushed();
+
+    Mockito.verify(delegate, Mockito.times(500))
+        .trackAction(Mockito.anyString(), Mockito.<Map<String, Object>>any());
+    Mockito.verify(delegate).flushQueue();
+  }
+
+  @Test
+  public void dropNewest() throws InterruptedException {
+    CountDownLatch release = blockFirstAction();
+    client = create(1, AdobeIntegration.OverflowPolicy.DROP_NEWEST);
+
+    client.trackAction("Blocking", null);
+    awaitBlocked();
+    client.trackAction("Queued", null);
+    client.trackAction("Dropped", null);
+    release.countDown();
+    client.flushQueue();
+    awaitFlushed();
+
+    InOrder inOrder = Mockito.inOrder(delegate);
+    inOrder.verify(delegate).trackAction("Blocking", null);
+    inOrder.verify(delegate).trackAction("Queued", null);
+    inOrder.verify(delegate).flushQueue();
+    Mockito.verify(delegate, Mockito.never()).trackAction("Dropped", null);
+    Assert.assertEquals(1, client.getDroppedHits());
+  }
+
+  @Test
+  public void dropOldest() throws InterruptedException {
+    CountDownLatch release = blockFirstAction();
+    client = create(2, AdobeIntegration.OverflowPolicy.DROP_OLDEST);
+
+    client.trackAction("Blocking", null);
+    awaitBlocked();
+    client.setUserIdentifier("user");
+    client.trackAction("Dropped", null);
+    client.trackAction("Queued", null);
+    release.countDown();
+    client.flushQueue();
+    awaitFlushed();
+
+    InOrder inOrder = Mockito.inOrder(delegate);
+    inOrder.verify(delegate).trackAction("Blocking", null);
+    inOrder.verify(delegate).setUserIdentifier("user");
+    inOrder.verify(delegate).trackAction("Queued", null);
+    inOrder.verify(delegate).flushQueue();
+    Mockito.verify(delegate, Mockito.never()).trackAction("Dropped", null);
+    Assert.assertEquals(1, client.getDroppedHits());
+  }
+
+  @Test
+  public void keepsDispatchingAfterFailure() {
+    Mockito.doThrow(new IllegalStateException("failure"))
+        .when(delegate)
+        .trackState("Failing", null);
+    client = create(10, AdobeIntegration.OverflowPolicy.BLOCK);
+
+    client.trackState("Failing", null);
+    client.trackState("Home", null);
+    client.flushQueue();
+    awaitFlushed();
+
+    Mockito.verify(delegate).trackState("Home", null);
+    Mockito.verify(delegate).flushQueue();
+  }
+
+  @Test
+  public void ignoresCallsAfterShutdown() {
+    client = create(10, AdobeIntegration.OverflowPolicy.BLOCK);
+
+    client.trackState("Home", null);
+    client.shutdown();
+    client.trackState("Ignored", null);
+    client.flushQueue();
+
+    Mockito.verify(delegate, Mockito.timeout(1000)).trackState("Home", null);
+    Mockito.verify(delegate, Mockito.never()).trackState("Ignored", null);
+    Mockito.verify(delegate, Mockito.never()).flushQueue();
+  }
+
+  @Test(timeout = 5000)
+  public void flushDoesNotWaitForWorker() throws InterruptedException {
+    CountDownLatch release = blockFirstAction();
+    client = create(10, AdobeIntegration.OverflowPolicy.BLOCK);
+
+    client.trackAction("Blocking", null);
+    awaitBlocked();
+    client.flushQueue();
+    Mockito.verify(delegate, Mockito.never()).flushQueue();
+
+    release.countDown();
+    awaitFlushed();
+  }
+
+  @Test(timeout = 5000)
+  public void callsRacingShutdownDoNotBlock() throws InterruptedException {
+    for (int i = 0; i < 100; i++) {
+      final DispatchingAdobeAnalyticsClient racing =
+          create(1, AdobeIntegration.OverflowPolicy.BLOCK);
+      Thread caller =
+          new Thread() {
+            @Override
+            public void run() {
+              for (int j = 0; j < 10; j++) {
+                racing.trackAction("Action", null);
+                racing.flushQueue();
+              }
+            }
+          };
+      caller.start();
+      racing.shutdown();
+      caller.join();
+    }
+  }
+
+  private DispatchingAdobeAnalyticsClient create(
+      int queueSize, AdobeIntegration.OverflowPolicy overflowPolicy) {
+    return new DispatchingAdobeAnalyticsClient(
+        delegate, queueSize, overflowPolicy, Logger.with(LogLevel.NONE));
+  }
+
+  private final CountDownLatch blocked = new CountDownLatch(1);
+
+  /** Blocks the worker thread on the "Blocking" action until the returned latch is released. */
+  private CountDownLatch blockFirstAction() {
+    final CountDownLatch release = new CountDownLatch(1);
+    Mockito.doAnswer(
+            new Answer<Void>() {
+              @Override
+              public Void answer(InvocationOnMock invocation) throws Throwable {
+                blocked.countDown();
+                release.await();
+                return null;
+              }
+            })
+        .when(delegate)
+        .trackAction("Blocking", null);
+    return release;
+  }
+
+  /** Waits for the flush queued last to be forwarded, after every call made before it. */
+  private void awaitFlushed() {
+    Mockito.verify(delegate, Mockito.timeout(1000).atLeastOnce()).flushQueue();
+  }
+
+  private void awaitBlocked() throws InterruptedException {
+    Assert.assertTrue(blocked.await(1, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,108 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+public class EventPatternsTest {
+
+  @Test
+  public void wildcards() {
+    Map<String, String> rules = new HashMap<>();
+    rules.put("Article Read - *", "prefix");
+    rules.put("* Shared", "suffix");
+    rules.put("Video * Shared", "infix");
+    rules.put("Cart *ed *", "multiple");
+    EventRoutes routes = new EventRoutes(rules);
+
+    Assert.assertEquals("prefix", routes.get("Article Read - Sports").action);
+    Assert.assertEquals("prefix", routes.get("Article Read - ").action);
+    Assert.assertEquals("suffix", routes.get("Article Shared").action);
+    Assert.assertEquals("infix", routes.get("Video Clip Shared").action);
+    Assert.assertEquals("multiple", routes.get("Cart Updated Twice").action);
+    Assert.assertNull(routes.get("Article Read"));
+    Assert.assertNull(routes.get("Video Clip Shared!"));
+  }
+
+  @Test
+  public void mostSpecificRuleWins() {
+    Map<String, String> rules = new HashMap<>();
+    rules.put("*", "any");
+    rules.put("Video *", "video");
+    rules.put("Video * Shared", "video shared");
+    rules.put("Video Clip Shared", "exact");
+    EventRoutes routes = new EventRoutes(rules);
+
+    Assert.assertEquals("exact", routes.get("Video Clip Shared").action);
+    Assert.assertEquals("video shared", routes.get("Video Movie Shared").action);
+    Assert.assertEquals("video", routes.get("Video Liked").action);
+    Assert.assertEquals("any", routes.get("Liked").action);
+    // Specced events are never matched by rules.
+    Assert.assertEquals(EventRoutes.Type.VIDEO, routes.get("Video Playback Started").type);
+    Assert.assertEquals(EventRoutes.Type.ECOMMERCE, routes.get("Order Completed").type);
+    Assert.assertEquals(rules, routes.getEventsMapping());
+  }
+
+  @Test
+  public void memoizedMatchesAreBounded() {
+    EventRoutes routes = new EventRoutes(Collections.singletonMap("A*", "a"));
+
+    for (int i = 0; i < EventRoutes.MAX_MATCHES * 3; i++) {
+      Assert.assertEquals("a", routes.get("A" + i).action);
+      Assert.assertNull(routes.get("B" + i));
+    }
+  }
+
+  @Test
+  public void matchesRegularExpressions() {
+    Random random = new Random(42);
+    for (int run = 0; run < 200; run++) {
+      EventPatterns patterns = new EventPatterns();
+      Map<String, Pattern> expressions = new HashMap<>();
+      for (int i = 0; i < 10; i++) {
+        String rule = randomString(random, "ab*", 1 + random.nextInt(6));
+        if (!EventPatterns.isPattern(rule)) {
+          rule += "*";
+        }
+        patterns.add(rule, new EventRoutes.Route(EventRoutes.Type.ACTION, null, null, rule));
+        expressions.put(rule, Pattern.compile(rule.replace("*", ".*")));
+      }
+
+      for (int i = 0; i < 50; i++) {
+        String event = randomString(random, "ab", random.nextInt(8));
+        String expected = null;
+        for (Map.Entry<String, Pattern> entry : expressions.entrySet()) {
+          if (entry.getValue().matcher(event).matches()
+              && (expected == null || moreSpecific(entry.getKey(), expected))) {
+            expected = entry.getKey();
+          }
+        }
+
+        EventRoutes.Route route = patterns.match(event);
+        Assert.assertEquals(event, expected, route != null ? route.action : null);
+      }
+    }
+  }
+
+  private static boolean moreSpecific(String rule, String other) {
+    int literals = rule.replace("*", "").length();
+    int otherLiterals = other.replace("*", "").length();
+    if (literals != otherLiterals) {
+      return literals > otherLiterals;
+    }
+    return rule.compareTo(other) < 0;
+  }
+
+  private static String randomString(Random random, String alphabet, int length) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,77 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class EventRoutesTest {
+
+  @Test
+  public void routes() {
+    Map<String, String> eventsMapping = new HashMap<>();
+    eventsMapping.put("Testing Event", "Adobe Testing Event");
+    eventsMapping.put("Order Completed", "Adobe Order");
+    eventsMapping.put("Video Playback Started", "Adobe Playback");
+    EventRoutes routes = new EventRoutes(eventsMapping);
+
+    EventRoutes.Route action = routes.get("Testing Event");
+    Assert.assertEquals(EventRoutes.Type.ACTION, action.type);
+    Assert.assertEquals("Adobe Testing Event", action.action);
+
+    EventRoutes.Route ecommerce = routes.get("Product Added");
+    Assert.assertEquals(EventRoutes.Type.ECOMMERCE, ecommerce.type);
+    Assert.assertEquals(EcommerceAnalytics.Event.ProductAdded, ecommerce.ecommerceEvent);
+
+    EventRoutes.Route mappedEcommerce = routes.get("Order Completed");
+    Assert.assertEquals(EventRoutes.Type.MAPPED_ECOMMERCE, mappedEcommerce.type);
+
+    EventRoutes.Route video = routes.get("Video Playback Started");
+    Assert.assertEquals(EventRoutes.Type.VIDEO, video.type);
+    Assert.assertEquals(VideoAnalytics.Event.PlaybackStarted, video.videoEvent);
+  }
+
+  @Test
+  public void routesAreShared() {
+    EventRoutes routes =
+        new EventRoutes(Collections.singletonMap("Testing Event", "Adobe Testing Event"));
+    EventRoutes other = new EventRoutes(null);
+
+    Assert.assertSame(routes.get("Product Added"), other.get("Product Added"));
+    Assert.assertSame(routes.get("Video Playback Paused"), other.get("Video Playback Paused"));
+  }
+
+  @Test
+  public void unmappedEventsAreDropped() {
+    EventRoutes routes = new EventRoutes(null);
+
+    Assert.assertNull(routes.get("Testing Event"));
+    Assert.assertNull(routes.get(null));
+    Assert.assertEquals(EventRoutes.Type.ECOMMERCE, routes.get("Cart Viewed").type);
+  }
+
+  @Test
+  public void manyEvents() {
+    Map<String, Object> eventsMapping = new HashMap<>();
+    for (int i = 0; i < 5000; i++) {
+      eventsMapping.put("Event " + i, "Adobe Event " + i);
+    }
+    eventsMapping.put("Order Completed", 1);
+    EventRoutes routes = new EventRoutes(eventsMapping);
+
+    for (int i = 0; i < 5000; i++) {
+      Assert.assertEquals("Adobe Event " + i, routes.get("Event " + i).action);
+    }
+    Assert.assertNull(routes.get("Event 5000"));
+    Assert.assertEquals(EventRoutes.Type.MAPPED_ECOMMERCE, routes.get("Order Completed").type);
+    Assert.assertEquals(EventRoutes.Type.VIDEO, routes.get("Video Playback Paused").type);
+
+    Map<String, String> expected = new HashMap<>();
+    for (Map.Entry<String, Object> entry : eventsMapping.entrySet()) {
+      expected.put(entry.getKey(), String.valueOf(entry.getValue()));
+    }
+    Assert.assertEquals(expected, routes.getEventsMapping());
+  }
+}
@@ -0,0 +1,130 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.adobe.primetime.va.simple.MediaHeartbeat;
+import com.adobe.primetime.va.simple.MediaHeartbeatConfig;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class HeartbeatPoolTest {
+
+  private HeartbeatPool pool;
+
+  @Before
+  public void setUp() {
+    pool = new HeartbeatPool("tracking.server", "app", 2);
+  }
+
+  @Test
+  public void config() {
+    MediaHeartbeatConfig config = pool.getConfig(new HeartbeatPool.Key("HBO", "player", "ovp", true, false));
+
+    Assert.assertEquals("tracking.server", config.trackingServer);
+    Assert.assertEquals("app", config.appVersion);
+    Assert.assertEquals("HBO", config.channel);
+    Assert.assertEquals("player", config.playerName);
+    Assert.assertEquals("ovp", config.ovp);
+    Assert.assertTrue(config.ssl);
+    Assert.assertFalse(config.debugLogging);
+  }
+
+  @Test
+  public void configCached() {
+    MediaHeartbeatConfig config = pool.getConfig(new HeartbeatPool.Key("HBO", "player", "ovp", true, false));
+
+    Assert.assertSame(config, pool.getConfig(new HeartbeatPool.Key("HBO", "player", "ovp", true, false)));
+    Assert.assertNotSame(config, pool.getConfig(new HeartbeatPool.Key("HBO", "player", "ovp", true, true)));
+    Assert.assertEquals(2, pool.getConfigCount());
+  }
+
+  @Test
+  public void configCacheBounded() {
+    for (int i = 0; i < HeartbeatPool.MAX_CONFIGS * 2; i++) {
+      pool.getConfig(new HeartbeatPool.Key("channel " + i, "player", "ovp", true, false));
+    }
+
+    Assert.assertEquals(HeartbeatPool.MAX_CONFIGS, pool.getConfigCount());
+  }
+
+  @Test
+  public void configCacheDisabled() {
+    pool = new HeartbeatPool("tracking.server", "app", 2, 0);
+    HeartbeatPool.Key key = new HeartbeatPool.Key("HBO", "player", "ovp", true, false);
+
+    MediaHeartbeatConfig config = pool.getConfig(key);
+
+    Assert.assertNotSame(config, pool.getConfig(key));
+    Assert.assertEquals("HBO", config.channel);
+    Assert.assertEquals(0, pool.getConfigCount());
+  }
+
+  @Test
+  public void acquireEmpty() {
+    Assert.assertNull(pool.acquire(new HeartbeatPool.Key("HBO", "player", "ovp", true, false)));
+  }
+
+  @Test
+  public void acquireSameKey() {
+    HeartbeatPool.Entry hbo = entry("HBO");
+    HeartbeatPool.Entry netflix = entry("Netflix");
+    pool.release(hbo);
+    pool.release(netflix);
+
+    Assert.assertSame(hbo, pool.acquire(new HeartbeatPool.Key("HBO", "player", "ovp", true, false)));
+    Assert.assertNull(pool.acquire(new HeartbeatPool.Key("HBO", "player", "ovp", true, false)));
+    Assert.assertEquals(1, pool.size());
+  }
+
+  @Test
+  public void acquireResetsPlayhead() {
+    TestClock clock = new TestClock();
+    HeartbeatPool.Entry entry = new HeartbeatPool.Entry(
+        new HeartbeatPool.Key("HBO", "player", "ovp", true, false),
+        new PlaybackDelegate(clock),
+        Mockito.mock(MediaHeartbeat.class));
+    clock.advance(5000L);
+    entry.playback.pausePlayhead();
+    pool.release(entry);
+
+    pool.acquire(entry.key);
+
+    Assert.assertEquals(0.0, entry.playback.getCurrentPlaybackTime(), 0.001);
+    Assert.assertFalse(entry.playback.isPaused());
+    Assert.assertNull(entry.playback.getQosData());
+  }
+
+  @Test
+  public void releaseDiscardsLeastRecentlyReleased() {
+    HeartbeatPool.Entry first = entry("first");
+    pool.release(first);
+    pool.release(entry("second"));
+    pool.release(entry("third"));
+
+    Assert.assertEquals(2, pool.size());
+    Assert.assertNull(pool.acquire(first.key));
+  }
+
+  @Test
+  public void disabled() {
+    pool = new HeartbeatPool("tracking.server", "app", 0);
+    HeartbeatPool.Entry entry = entry("HBO");
+    pool.release(entry);
+
+    Assert.assertEquals(0, pool.size());
+    Assert.assertNull(pool.acquire(entry.key));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeSize() {
+    new HeartbeatPool("tracking.server", "app", -1);
+  }
+
+  private static HeartbeatPool.Entry entry(String channel) {
+    return new HeartbeatPool.Entry(
+        new HeartbeatPool.Key(channel, "player", "ovp", true, false),
+        new PlaybackDelegate(new TestClock()),
+        Mockito.mock(MediaHeartbeat.class));
+  }
+}
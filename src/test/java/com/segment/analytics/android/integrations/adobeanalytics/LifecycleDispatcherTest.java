@@ -0,0 +1,99 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import android.app.Activity;
+import android.content.Context;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LifecycleDispatcherTest {
+
+  @Mock private AdobeAnalyticsClient client;
+  @Mock private Context application;
+  @Mock private Context otherApplication;
+  @Mock private Activity activity;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+  }
+
+  @Test
+  public void collapsesRedundantSetContext() {
+    LifecycleDispatcher dispatcher =
+        new LifecycleDispatcher(client, LifecycleDispatcher.DIRECT_EXECUTOR, application);
+
+    Assert.assertFalse(dispatcher.setContext(application));
+    Assert.assertTrue(dispatcher.setContext(otherApplication));
+    Assert.assertFalse(dispatcher.setContext(otherApplication));
+
+    Mockito.verify(client).setContext(otherApplication);
+    Mockito.verifyNoMoreInteractions(client);
+  }
+
+  @Test
+  public void runsCallsOnExecutorInOrder() {
+    final List<Runnable> pending = new ArrayList<>();
+    Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        pending.add(command);
+      }
+    };
+    LifecycleDispatcher dispatcher = new LifecycleDispatcher(client, executor, null);
+
+    dispatcher.setContext(application);
+    dispatcher.collectLifecycleData(activity);
+    dispatcher.pauseCollectingLifecycleData();
+    dispatcher.setContext(application);
+    Mockito.verifyZeroInteractions(client);
+    Assert.assertEquals(3, pending.size());
+
+    for (Runnable runnable : pending) {
+      runnable.run();
+    }
+    InOrder inOrder = Mockito.inOrder(client);
+    inOrder.verify(client).setContext(application);
+    inOrder.verify(client).collectLifecycleData(activity);
+    inOrder.verify(client).pauseCollectingLifecycleData();
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void serialExecutorRunsInBackground() throws InterruptedException {
+    final AtomicReference<Thread> thread = new AtomicReference<>();
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        thread.set(Thread.currentThread());
+        return null;
+      }
+    }).when(client).collectLifecycleData(activity);
+    ExecutorService executor = LifecycleDispatcher.newSerialExecutor();
+    LifecycleDispatcher dispatcher = new LifecycleDispatcher(client, executor, application);
+
+    dispatcher.collectLifecycleData(activity);
+    dispatcher.pauseCollectingLifecycleData();
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    Assert.assertNotSame(Thread.currentThread(), thread.get());
+    InOrder inOrder = Mockito.inOrder(client);
+    inOrder.verify(client).collectLifecycleData(activity);
+    inOrder.verify(client).pauseCollectingLifecycleData();
+  }
+}
@@ -1,34 +1,146 @@
 package com.segment.analytics.android.integrations.adobeanalytics;
 
+import com.adobe.primetime.va.simple.MediaObject;
+import com.segment.analytics.Properties;
+
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 public class PlaybackDelegateTest {
 
+  private TestClock clock;
+
+  @Before
+  public void setUp() {
+    clock = new TestClock();
+  }
+
   @Test
-  public void videoPlaybackDelegatePlay() throws Exception {
-    PlaybackDelegate playbackDelegate = new PlaybackDelegate();
-    Thread.sleep(2000);
-    Assert.assertEquals(playbackDelegate.getCurrentPlaybackTime(), 2.0, 0.01);
+  public void videoPlaybackDelegatePlay() {
+    PlaybackDelegate playbackDelegate = new PlaybackDelegate(clock);
+    clock.advance(2000);
+    Assert.assertEquals(playbackDelegate.getCurrentPlaybackTime(), 2.0, 0.001);
   }
 
   @Test
-  public void videoPlaybackDelegatePaused() throws Exception {
-    PlaybackDelegate playbackDelegate = new PlaybackDelegate();
+  public void videoPlaybackDelegatePaused() {
+    PlaybackDelegate playbackDelegate = new PlaybackDelegate(clock);
     playbackDelegate.pausePlayhead();
     Double firstPlayheadPosition = playbackDelegate.getCurrentPlaybackTime();
-    Thread.sleep(2000);
-    Assert.assertEquals(playbackDelegate.getCurrentPlaybackTime(), firstPlayheadPosition, 0.01);
+    clock.advance(2000);
+    Assert.assertEquals(playbackDelegate.getCurrentPlaybackTime(), firstPlayheadPosition, 0.001);
+  }
+
+  @Test
+  public void videoPlaybackDelegatePlayAndPause() {
+    PlaybackDelegate playbackDelegate = new PlaybackDelegate(clock);
+    playbackDelegate.pausePlayhead();
+    clock.advance(1000);
+    playbackDelegate.unPausePlayhead();
+    clock.advance(3000);
+    Assert.assertEquals(playbackDelegate.getCurrentPlaybackTime(), 3.0, 0.001);
   }
 
   @Test
-  public void videoPlaybackDelegatePlayAndPause() throws Exception {
-    PlaybackDelegate playbackDelegate = new PlaybackDelegate();
+  public void videoPlaybackDelegateKeepsMilliseconds() {
+    PlaybackDelegate playbackDelegate = new PlaybackDelegate(clock);
+    clock.advance(700);
     playbackDelegate.pausePlayhead();
-    Thread.sleep(1000);
+    clock.advance(5000);
     playbackDelegate.unPausePlayhead();
-    Thread.sleep(3000);
-    Assert.assertEquals(playbackDelegate.getCurrentPlaybackTime(), 3.0, 0.01);
+    clock.advance(700);
+    Assert.assertEquals(playbackDelegate.getCurrentPlaybackTime(), 1.4, 0.001);
   }
 
+  @Test
+  public void videoPlaybackDelegatePausedTwice() {
+    PlaybackDelegate playbackDelegate = new PlaybackDelegate(clock);
+    clock.advance(1000);
+    playbackDelegate.pausePlayhead();
+    clock.advance(1000);
+    playbackDelegate.pausePlayhead();
+    Assert.assertEquals(playbackDelegate.getCurrentPlaybackTime(), 1.0, 0.001);
+  }
+
+  @Test
+  public void videoPlaybackDelegateUpdatePosition() {
+    PlaybackDelegate playbackDelegate = new PlaybackDelegate(clock);
+    clock.advance(1000);
+    playbackDelegate.updatePlayheadPosition(12.5);
+    clock.advance(250);
+    Assert.assertEquals(playbackDelegate.getCurrentPlaybackTime(), 12.75, 0.001);
+  }
+
+  @Test
+  public void readersNeverSeeTornState() throws InterruptedException {
+    final AtomicLong time = new AtomicLong();
+    Clock clock = new Clock() {
+      @Override
+      public long elapsedMillis() {
+        return time.get();
+      }
+    };
+    final PlaybackDelegate playbackDelegate = new PlaybackDelegate(clock);
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicReference<String> failure = new AtomicReference<>();
+    int readers = 4;
+    final CountDownLatch done = new CountDownLatch(readers);
+
+    // The writer always moves the playhead to the current time, so a consistent playhead reports
+    // exactly the clock time. A position paired with the time of another update does not. Every
+    // quality of service value is also set to the current time, a mix of updates differs.
+    for (int i = 0; i < readers; i++) {
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (running.get() && failure.get() == null) {
+              long before = time.get();
+              long position = Math.round(playbackDelegate.getCurrentPlaybackTime() * 1000);
+              long after = time.get();
+              if (position < before || position > after) {
+                failure.set("Read " + position + " between " + before + " and " + after);
+              }
+              MediaObject qos = playbackDelegate.getQoSObject();
+              if (qos != null) {
+                long bitrate = (Long) qos.getValue("bitrate");
+                double startupTime = (Double) qos.getValue("startupTime");
+                double fps = (Double) qos.getValue("fps");
+                long droppedFrames = (Long) qos.getValue("droppedFrames");
+                if (startupTime != bitrate || fps != bitrate || droppedFrames != bitrate) {
+                  failure.set("Read quality of service " + bitrate + ", " + startupTime + ", "
+                      + fps + ", " + droppedFrames);
+                }
+              }
+            }
+          } finally {
+            done.countDown();
+          }
+        }
+      }).start();
+    }
+
+    for (int i = 0; i < 2000000 && failure.get() == null; i++) {
+      long now = time.incrementAndGet();
+      playbackDelegate.updatePlayheadPosition(now / 1000.0);
+      playbackDelegate.updateQos(new Properties()
+          .putValue("bitrate", now)
+          .putValue("startupTime", now)
+          .putValue("fps", now)
+          .putValue("droppedFrames", now));
+      if (i % 2 == 0) {
+        playbackDelegate.unPausePlayhead();
+      }
+    }
+    running.set(false);
+    done.await();
+
+    Assert.assertNull(failure.get());
+  }
 }
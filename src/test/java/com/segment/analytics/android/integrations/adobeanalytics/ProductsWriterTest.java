@@ -0,0 +1,64 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.ValueMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ProductsWriterTest {
+
+  @Test
+  public void append() {
+    ProductsWriter writer = new ProductsWriter("name");
+    StringBuilder buffer = ProductsWriter.newBuffer(3);
+
+    Assert.assertTrue(writer.append(buffer, new ValueMap()
+        .putValue("name", "shoes")
+        .putValue("category", "athletic")
+        .putValue("quantity", 2)
+        .putValue("price", 10.0)));
+    Assert.assertFalse(writer.append(buffer, new ValueMap().putValue("name", " ")));
+    Assert.assertTrue(writer.append(buffer, new ValueMap()
+        .putValue("product_id", 123)
+        .putValue("category", "  ")));
+
+    Assert.assertEquals("athletic;shoes;2;20.0,;123;1;0.0", buffer.toString());
+  }
+
+  @Test
+  public void appendParsesNumbersLikeStrings() {
+    ProductsWriter writer = new ProductsWriter("id");
+    StringBuilder buffer = ProductsWriter.newBuffer(4);
+
+    writer.append(buffer, new ValueMap()
+        .putValue("id", "a")
+        .putValue("quantity", 2.0)
+        .putValue("price", 1.5f));
+    writer.append(buffer, new ValueMap()
+        .putValue("id", "b")
+        .putValue("quantity", "3")
+        .putValue("price", " 2.5 "));
+    writer.append(buffer, new ValueMap()
+        .putValue("id", "c")
+        .putValue("quantity", Long.MAX_VALUE)
+        .putValue("price", "invalid"));
+    writer.append(buffer, new ValueMap()
+        .putValue("id", "d")
+        .putValue("quantity", 2L)
+        .putValue("price", 3L));
+
+    Assert.assertEquals(";a;1;1.5,;b;3;7.5,;c;1;0.0,;d;2;6.0", buffer.toString());
+  }
+
+  @Test
+  public void isProductList() {
+    Assert.assertTrue(ProductsWriter.isProductList(Arrays.asList("invalid", new ValueMap())));
+    Assert.assertFalse(ProductsWriter.isProductList(Collections.singletonList("invalid")));
+    Assert.assertFalse(ProductsWriter.isProductList(Collections.emptyList()));
+    Assert.assertFalse(ProductsWriter.isProductList(new ValueMap()));
+    Assert.assertFalse(ProductsWriter.isProductList(null));
+  }
+}
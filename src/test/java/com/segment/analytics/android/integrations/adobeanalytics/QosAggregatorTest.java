@@ -0,0 +1,126 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.adobe.primetime.va.simple.MediaObject;
+import com.segment.analytics.Properties;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QosAggregatorTest {
+
+  private TestClock clock;
+  private QosAggregator qos;
+
+  @Before
+  public void setUp() {
+    clock = new TestClock();
+    qos = new QosAggregator(clock);
+  }
+
+  @Test
+  public void nothingToReport() {
+    Assert.assertNull(qos.get());
+  }
+
+  @Test
+  public void update() {
+    qos.update(new Properties()
+        .putValue("bitrate", 12000)
+        .putValue("startup_time", 1.5)
+        .putValue("fps", 50)
+        .putValue("dropped_frames", 2));
+
+    assertQos(qos.get(), 12000L, 1.5, 50.0, 2L);
+  }
+
+  @Test
+  public void measureStartupTime() {
+    clock.advance(1500);
+    qos.contentStarted();
+    clock.advance(1000);
+    qos.contentStarted();
+    qos.update(new Properties().putValue("bitrate", 12000));
+
+    assertQos(qos.get(), 12000L, 1.5, 0.0, 0L);
+  }
+
+  @Test
+  public void reportedStartupTimeReplacesMeasuredOne() {
+    qos.update(new Properties().putValue("startupTime", 3));
+    clock.advance(1500);
+    qos.contentStarted();
+
+    assertQos(qos.get(), 0L, 3.0, 0.0, 0L);
+  }
+
+  @Test
+  public void rebuiltOnlyWhenChanged() {
+    Properties properties = new Properties().putValue("bitrate", 12000).putValue("fps", 50);
+    qos.update(properties);
+    MediaObject first = qos.get();
+
+    qos.update(properties);
+    Assert.assertSame(first, qos.get());
+
+    for (int bitrate = 1000; bitrate <= 8000; bitrate += 1000) {
+      qos.update(new Properties().putValue("bitrate", bitrate).putValue("fps", 50));
+    }
+    MediaObject second = qos.get();
+    Assert.assertNotSame(first, second);
+    Assert.assertSame(second, qos.get());
+    assertQos(second, 8000L, 0.0, 50.0, 0L);
+  }
+
+  @Test
+  public void countBuffering() {
+    qos.bufferStarted();
+    clock.advance(300);
+    qos.bufferStarted();
+    clock.advance(200);
+    qos.bufferCompleted();
+    qos.bufferCompleted();
+    qos.bufferStarted();
+    clock.advance(100);
+
+    Assert.assertEquals(2, qos.getBufferCount());
+    Assert.assertEquals(600, qos.getBufferMillis());
+  }
+
+  @Test
+  public void countSeeks() {
+    qos.seekStarted();
+    qos.seekStarted();
+
+    Assert.assertEquals(2, qos.getSeekCount());
+  }
+
+  @Test
+  public void reset() {
+    qos.update(new Properties().putValue("bitrate", 12000));
+    qos.contentStarted();
+    qos.bufferStarted();
+    qos.seekStarted();
+    Assert.assertNotNull(qos.get());
+
+    clock.advance(5000);
+    qos.reset();
+    Assert.assertNull(qos.get());
+    Assert.assertEquals(0, qos.getBufferCount());
+    Assert.assertEquals(0, qos.getBufferMillis());
+    Assert.assertEquals(0, qos.getSeekCount());
+
+    clock.advance(500);
+    qos.contentStarted();
+    assertQos(qos.get(), 0L, 0.5, 0.0, 0L);
+  }
+
+  private static void assertQos(
+      MediaObject qos, long bitrate, double startupTime, double fps, long droppedFrames) {
+    Assert.assertNotNull(qos);
+    Assert.assertEquals(bitrate, qos.getValue("bitrate"));
+    Assert.assertEquals(startupTime, (Double) qos.getValue("startupTime"), 0.001);
+    Assert.assertEquals(fps, (Double) qos.getValue("fps"), 0.001);
+    Assert.assertEquals(droppedFrames, qos.getValue("droppedFrames"));
+  }
+}
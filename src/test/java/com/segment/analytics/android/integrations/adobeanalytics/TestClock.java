@@ -0,0 +1,16 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+/** Clock that only moves when it is told to, so tests do not depend on real time. */
+class TestClock implements Clock {
+
+  private long elapsedMillis;
+
+  @Override
+  public long elapsedMillis() {
+    return elapsedMillis;
+  }
+
+  void advance(long millis) {
+    elapsedMillis += millis;
+  }
+}
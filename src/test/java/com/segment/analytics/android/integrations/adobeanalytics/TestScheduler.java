@@ -0,0 +1,57 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Scheduler that holds its tasks until the test runs them. */
+class TestScheduler implements Scheduler {
+
+  private final Map<Runnable, Long> tasks = new LinkedHashMap<>();
+  private long delayMillis;
+
+  @Override
+  public void postDelayed(Runnable task, long delayMillis) {
+    Assert.assertFalse(tasks.containsKey(task));
+    tasks.put(task, delayMillis);
+    this.delayMillis = delayMillis;
+  }
+
+  @Override
+  public void cancel(Runnable task) {
+    tasks.remove(task);
+  }
+
+  boolean hasPendingTask() {
+    return !tasks.isEmpty();
+  }
+
+  int getPendingTaskCount() {
+    return tasks.size();
+  }
+
+  /**
+   * @return Delay of the most recently posted task.
+   */
+  long getDelayMillis() {
+    return delayMillis;
+  }
+
+  /** Runs the only pending task. */
+  void runPendingTask() {
+    Assert.assertEquals(1, tasks.size());
+    runPendingTasks();
+  }
+
+  /** Runs every pending task, in the order they were posted. */
+  void runPendingTasks() {
+    List<Runnable> pending = new ArrayList<>(tasks.keySet());
+    tasks.clear();
+    for (Runnable task : pending) {
+      task.run();
+    }
+  }
+}
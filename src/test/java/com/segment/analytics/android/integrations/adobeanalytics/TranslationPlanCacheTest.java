@@ -0,0 +1,170 @@
+package com.segment.analytics.android.integrations.adobeanalytics;
+
+import com.segment.analytics.Properties;
+import com.segment.analytics.ValueMap;
+import com.segment.analytics.integrations.TrackPayload;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class TranslationPlanCacheTest {
+
+  private ContextDataConfiguration config;
+  private TranslationPlanCache plans;
+
+  @Before
+  public void setUp() {
+    Map<String, String> variables = new HashMap<>();
+    variables.put("testing", "myapp.testing");
+    variables.put(".context.library", "myapp.library");
+    config = new ContextDataConfiguration("myapp.", variables);
+    plans = new TranslationPlanCache(config, ContextDataBuilder.DEFAULT_RESERVED_KEYS, 2);
+  }
+
+  @Test
+  public void matchesContextDataBuilder() {
+    TrackPayload payload = new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Testing Event")
+        .context(new ValueMap().putValue("library", "Android"))
+        .properties(new Properties()
+            .putValue("testing", "testing value")
+            .putValue("count", 3)
+            .putValue("empty", null)
+            .putValue("products", "ignored"))
+        .build();
+
+    for (int i = 0; i < 2; i++) {
+      Assert.assertEquals(build(payload, false), build(payload, true));
+    }
+    Assert.assertEquals(1, plans.getHits());
+    Assert.assertEquals(1, plans.getMisses());
+  }
+
+  @Test
+  public void keysInAnyOrderShareAPlan() {
+    Map<String, Object> reordered =
+        write("Testing Event", new Properties().putValue("a", 1).putValue("b", 2));
+    Assert.assertEquals(reordered,
+        write("Testing Event", new Properties().putValue("b", 2).putValue("a", 1)));
+    write("Other Event", new Properties().putValue("a", 1).putValue("b", 2));
+
+    Assert.assertEquals(1, plans.getHits());
+    Assert.assertEquals(2, plans.getMisses());
+  }
+
+  @Test
+  public void sameHashCodeDifferentKeys() {
+    // "Aa" and "BB" have the same hash code.
+    write("Testing Event", new Properties().putValue("Aa", 1));
+    TrackPayload payload = new TrackPayload.Builder()
+        .userId("test-user")
+        .event("Testing Event")
+        .properties(new Properties().putValue("BB", 2))
+        .build();
+
+    Map<String, Object> contextData = build(payload, true);
+
+    Assert.assertEquals(2, plans.getMisses());
+    Assert.assertEquals(2, contextData.get("myapp.BB"));
+    Assert.assertFalse(contextData.containsKey("myapp.Aa"));
+  }
+
+  @Test
+  public void planNeedsExactKeys() {
+    write("Testing Event", new Properties().putValue("a", 1).putValue("b", 2));
+    Map<String, Object> contextData =
+        write("Testing Event", new Properties().putValue("a", 1).putValue("c", 3));
+
+    Assert.assertEquals(2, plans.getMisses());
+    Assert.assertEquals(2, contextData.size());
+    Assert.assertEquals(1, contextData.get("myapp.a"));
+    Assert.assertEquals(3, contextData.get("myapp.c"));
+
+    // Both shapes of the event are kept.
+    write("Testing Event", new Properties().putValue("a", 1).putValue("b", 2));
+    write("Testing Event", new Properties().putValue("a", 1).putValue("c", 3));
+    Assert.assertEquals(2, plans.getHits());
+    Assert.assertEquals(2, plans.getMisses());
+  }
+
+  @Test
+  public void keepsShapesOfEachEvent() {
+    for (int i = 0; i <= TranslationPlanCache.MAX_SHAPES_PER_EVENT; i++) {
+      write("Testing Event", new Properties().putValue("key" + i, i));
+    }
+    // The oldest shape was dropped, the most recent ones are kept.
+    write("Testing Event", new Properties().putValue("key0", 0));
+    write("Testing Event", new Properties().putValue("key" + TranslationPlanCache.MAX_SHAPES_PER_EVENT, 0));
+
+    Assert.assertEquals(TranslationPlanCache.MAX_SHAPES_PER_EVENT + 2, plans.getMisses());
+    Assert.assertEquals(1, plans.size());
+  }
+
+  @Test
+  public void boundedNumberOfEvents() {
+    Properties properties = new Properties().putValue("a", 1);
+    write("First", properties);
+    write("Second", properties);
+    write("Third", properties);
+    Assert.assertEquals(2, plans.size());
+
+    write("Third", properties);
+    Assert.assertEquals(1, plans.getHits());
+    Assert.assertEquals(3, plans.getMisses());
+  }
+
+  @Test
+  public void recentlyUsedEventSurvivesEviction() {
+    Properties properties = new Properties().putValue("a", 1);
+    write("First", properties);
+    write("Second", properties);
+    write("First", properties);
+
+    write("Third", properties);
+    write("First", properties);
+    Assert.assertEquals(2, plans.getHits());
+    Assert.assertEquals(3, plans.getMisses());
+
+    write("Second", properties);
+    Assert.assertEquals(4, plans.getMisses());
+  }
+
+  @Test
+  public void hotEventSurvivesManyOtherEvents() {
+    plans = new TranslationPlanCache(config, ContextDataBuilder.DEFAULT_RESERVED_KEYS, 4);
+    Properties properties = new Properties().putValue("a", 1);
+    write("Hot", properties);
+
+    for (int i = 0; i < 100; i++) {
+      write("Event " + i, properties);
+      write("Hot", properties);
+    }
+
+    Assert.assertEquals(100, plans.getHits());
+    Assert.assertEquals(101, plans.getMisses());
+    Assert.assertEquals(4, plans.size());
+  }
+
+  private Map<String, Object> write(String event, Properties properties) {
+    Map<String, Object> contextData = new HashMap<>();
+    plans.writeExtraProperties(event, properties, false, contextData);
+    return contextData;
+  }
+
+  private Map<String, Object> build(TrackPayload payload, boolean cached) {
+    Map<String, Object> contextData = new HashMap<>();
+    if (cached) {
+      ContextDataBuilder.build(config, payload, payload.properties(), plans, payload.event(),
+          ContextDataBuilder.Format.RAW, contextData);
+    } else {
+      ContextDataBuilder.build(config, payload, payload.properties(),
+          ContextDataBuilder.DEFAULT_RESERVED_KEYS, ContextDataBuilder.Format.RAW, contextData);
+    }
+    return contextData;
+  }
+}
@@ -17,6 +17,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -310,12 +311,399 @@ public class VideoAnalyticsTest {
   @Test
   public void trackVideoPlaybackComplete() {
     startVideoSession();
+    PlaybackDelegate playback = videoAnalytics.getPlayback();
     sendHeartbeat("Video Playback Completed");
-    Assert.assertTrue(videoAnalytics.getPlayback().isPaused());
+    Assert.assertTrue(playback.isPaused());
+    Assert.assertFalse(videoAnalytics.isSessionStarted());
     Mockito.verify(heartbeat).trackComplete();
     Mockito.verify(heartbeat).trackSessionEnd();
   }
 
+  @Test
+  public void trackConcurrentSessions() {
+    MediaHeartbeat first = Mockito.mock(MediaHeartbeat.class);
+    MediaHeartbeat second = Mockito.mock(MediaHeartbeat.class);
+    Mockito.when(heartbeatFactory.get(Mockito.any(MediaHeartbeatDelegate.class), Mockito.any(MediaHeartbeatConfig.class))).thenReturn(first, second);
+
+    startVideoSession("first");
+    startVideoSession("second");
+    Assert.assertEquals(2, videoAnalytics.getSessionCount());
+
+    sendHeartbeat("Video Playback Paused", "first");
+    sendHeartbeat("Video Playback Buffer Started", "second");
+    Mockito.verify(first).trackPause();
+    Mockito.verify(second).trackEvent(MediaHeartbeat.Event.BufferStart, null, null);
+    Assert.assertTrue(videoAnalytics.getSession("first").getPlayback().isPaused());
+
+    // Events without a session id belong to the most recently started session.
+    sendHeartbeat("Video Playback Resumed");
+    Mockito.verify(second).trackPlay();
+    Mockito.verify(first, Mockito.never()).trackPlay();
+
+    sendHeartbeat("Video Playback Completed", "second");
+    Mockito.verify(second).trackSessionEnd();
+    Mockito.verify(first, Mockito.never()).trackSessionEnd();
+    Assert.assertNull(videoAnalytics.getSession("second"));
+    Assert.assertSame(videoAnalytics.getSession("first").getPlayback(), videoAnalytics.getPlayback());
+
+    sendHeartbeat("Video Playback Completed");
+    Mockito.verify(first).trackSessionEnd();
+    Assert.assertFalse(videoAnalytics.isSessionStarted());
+  }
+
+  @Test
+  public void trackUnknownSession() {
+    startVideoSession("first");
+    TrackPayload payload = new TrackPayload.Builder()
+            .userId("test-user")
+            .event("Video Playback Paused")
+            .properties(new Properties().putValue("session_id", "unknown"))
+            .build();
+
+    Assert.assertFalse(videoAnalytics.track(payload));
+    Mockito.verify(heartbeat, Mockito.never()).trackPause();
+  }
+
+  @Test
+  public void trackBeforeSessionStarted() {
+    TrackPayload payload = new TrackPayload.Builder()
+            .userId("test-user")
+            .event("Video Playback Paused")
+            .build();
+
+    Assert.assertFalse(videoAnalytics.track(payload));
+    Assert.assertFalse(videoAnalytics.isSessionStarted());
+    Assert.assertNull(VideoAnalytics.Event.get("Not a video event"));
+  }
+
+  @Test
+  public void restartSession() {
+    MediaHeartbeat first = Mockito.mock(MediaHeartbeat.class);
+    MediaHeartbeat second = Mockito.mock(MediaHeartbeat.class);
+    Mockito.when(heartbeatFactory.get(Mockito.any(MediaHeartbeatDelegate.class), Mockito.any(MediaHeartbeatConfig.class))).thenReturn(first, second);
+
+    startVideoSession("first");
+    startVideoSession("first");
+
+    Mockito.verify(first).trackSessionEnd();
+    Assert.assertEquals(1, videoAnalytics.getSessionCount());
+    Assert.assertSame(second, videoAnalytics.getSession("first").getHeartbeat());
+  }
+
+  @Test
+  public void maxSessions() {
+    MediaHeartbeat oldest = Mockito.mock(MediaHeartbeat.class);
+    Mockito.when(heartbeatFactory.get(Mockito.any(MediaHeartbeatDelegate.class), Mockito.any(MediaHeartbeatConfig.class))).thenReturn(oldest, heartbeat);
+
+    for (int i = 0; i <= VideoAnalytics.MAX_SESSIONS; i++) {
+      startVideoSession("session " + i);
+    }
+
+    Assert.assertEquals(VideoAnalytics.MAX_SESSIONS, videoAnalytics.getSessionCount());
+    Assert.assertNull(videoAnalytics.getSession("session 0"));
+    Mockito.verify(oldest).trackSessionEnd();
+    Mockito.verify(heartbeat, Mockito.never()).trackSessionEnd();
+  }
+
+  @Test
+  public void reuseHeartbeat() {
+    TestClock clock = new TestClock();
+    videoAnalytics.setClock(clock);
+    startVideoSession("first");
+    PlaybackDelegate playback = videoAnalytics.getPlayback();
+    clock.advance(5000L);
+    sendHeartbeat("Video Playback Completed", "first");
+
+    startVideoSession("second");
+
+    Mockito.verify(heartbeatFactory, Mockito.times(1)).get(Mockito.any(MediaHeartbeatDelegate.class), Mockito.any(MediaHeartbeatConfig.class));
+    Mockito.verify(heartbeat, Mockito.times(2)).trackSessionStart(Mockito.any(MediaObject.class), Mockito.<Map<String, String>>any());
+    Assert.assertSame(playback, videoAnalytics.getPlayback());
+    Assert.assertEquals(0.0, playback.getCurrentPlaybackTime(), 0.001);
+    Assert.assertFalse(playback.isPaused());
+    Assert.assertEquals(0, videoAnalytics.getHeartbeatPool().size());
+  }
+
+  @Test
+  public void heartbeatNotReusedWithOtherConfig() {
+    startVideoSession("first");
+    sendHeartbeat("Video Playback Completed", "first");
+
+    TrackPayload payload = new TrackPayload.Builder()
+            .userId("test-user")
+            .event(VideoAnalytics.Event.PlaybackStarted.getName())
+            .properties(new Properties()
+                    .putValue("sessionId", "second")
+                    .putValue("channel", "HBO")
+                    .putValue("videoPlayer", "other player"))
+            .build();
+    videoAnalytics.track(payload);
+
+    Mockito.verify(heartbeatFactory, Mockito.times(2)).get(Mockito.any(MediaHeartbeatDelegate.class), Mockito.any(MediaHeartbeatConfig.class));
+    Assert.assertEquals(1, videoAnalytics.getHeartbeatPool().size());
+    Assert.assertEquals(2, videoAnalytics.getHeartbeatPool().getConfigCount());
+  }
+
+  @Test
+  public void heartbeatPoolDisabled() {
+    videoAnalytics.setHeartbeatPoolSize(0);
+    startVideoSession("first");
+    sendHeartbeat("Video Playback Completed", "first");
+    startVideoSession("second");
+
+    Mockito.verify(heartbeatFactory, Mockito.times(2)).get(Mockito.any(MediaHeartbeatDelegate.class), Mockito.any(MediaHeartbeatConfig.class));
+    Assert.assertEquals(1, videoAnalytics.getHeartbeatPool().getConfigCount());
+  }
+
+  @Test
+  public void completeReleasesSession() {
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setScheduler(scheduler);
+    startVideoSession();
+    PlaybackDelegate playback = videoAnalytics.getPlayback();
+    sendHeartbeat(VideoAnalytics.Event.QualityUpdated.getName());
+    Assert.assertNotNull(playback.getQosData());
+    Assert.assertTrue(scheduler.hasPendingTask());
+
+    sendHeartbeat("Video Playback Completed");
+
+    Assert.assertEquals(0, videoAnalytics.getSessionCount());
+    Assert.assertNull(videoAnalytics.getPlayback());
+    Assert.assertNull(playback.getQosData());
+    Assert.assertFalse(scheduler.hasPendingTask());
+  }
+
+  @Test
+  public void endIdleSessions() {
+    MediaHeartbeat first = Mockito.mock(MediaHeartbeat.class);
+    MediaHeartbeat second = Mockito.mock(MediaHeartbeat.class);
+    Mockito.when(heartbeatFactory.get(Mockito.any(MediaHeartbeatDelegate.class), Mockito.any(MediaHeartbeatConfig.class))).thenReturn(first, second);
+    TestClock clock = new TestClock();
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(scheduler);
+    videoAnalytics.setSessionTimeout(60000L);
+
+    // A session whose content never starts times out.
+    startVideoSession("first");
+    Assert.assertEquals(60000L, scheduler.getDelayMillis());
+    clock.advance(30000L);
+    startVideoSession("second");
+    sendHeartbeat("Video Content Started", "second");
+    clock.advance(30000L);
+    scheduler.runPendingTask();
+
+    Mockito.verify(first).trackSessionEnd();
+    Mockito.verify(second, Mockito.never()).trackSessionEnd();
+    Assert.assertNull(videoAnalytics.getSession("first"));
+    Assert.assertSame(second, videoAnalytics.getSession("second").getHeartbeat());
+    Assert.assertFalse(scheduler.hasPendingTask());
+
+    // The timeout is measured from the pause, later events do not extend it.
+    clock.advance(20000L);
+    sendHeartbeat("Video Playback Paused", "second");
+    Assert.assertEquals(60000L, scheduler.getDelayMillis());
+    clock.advance(30000L);
+    sendHeartbeat("Video Quality Updated", "second");
+    clock.advance(30000L);
+    scheduler.runPendingTask();
+    Mockito.verify(second).trackSessionEnd();
+    Assert.assertFalse(videoAnalytics.isSessionStarted());
+    Assert.assertFalse(scheduler.hasPendingTask());
+  }
+
+  @Test
+  public void playingSessionOutlivesTimeout() {
+    TestClock clock = new TestClock();
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(scheduler);
+    videoAnalytics.setSessionTimeout(60000L);
+    startVideoSession();
+    sendHeartbeat("Video Content Started");
+
+    // Players may send no event while the content plays.
+    clock.advance(60000L);
+    scheduler.runPendingTask();
+    clock.advance(600000L);
+    Assert.assertFalse(scheduler.hasPendingTask());
+    Mockito.verify(heartbeat, Mockito.never()).trackSessionEnd();
+    Assert.assertTrue(videoAnalytics.isSessionStarted());
+
+    // Buffering that completes within the timeout does not end the session.
+    sendHeartbeat("Video Playback Buffer Started");
+    Assert.assertEquals(60000L, scheduler.getDelayMillis());
+    clock.advance(30000L);
+    sendHeartbeat("Video Playback Buffer Completed");
+    clock.advance(30000L);
+    scheduler.runPendingTask();
+    Mockito.verify(heartbeat, Mockito.never()).trackSessionEnd();
+    Assert.assertFalse(scheduler.hasPendingTask());
+
+    sendHeartbeat("Video Playback Buffer Started");
+    clock.advance(60000L);
+    scheduler.runPendingTask();
+    Mockito.verify(heartbeat).trackSessionEnd();
+    Assert.assertFalse(videoAnalytics.isSessionStarted());
+  }
+
+  @Test
+  public void idleSessionsKeptWithoutTimeout() {
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setScheduler(scheduler);
+    videoAnalytics.setSessionTimeout(0);
+
+    startVideoSession();
+
+    Assert.assertFalse(scheduler.hasPendingTask());
+    Assert.assertTrue(videoAnalytics.isSessionStarted());
+  }
+
+  @Test
+  public void suspendSessionsInBackground() {
+    MediaHeartbeat first = Mockito.mock(MediaHeartbeat.class);
+    MediaHeartbeat second = Mockito.mock(MediaHeartbeat.class);
+    Mockito.when(heartbeatFactory.get(Mockito.any(MediaHeartbeatDelegate.class), Mockito.any(MediaHeartbeatConfig.class))).thenReturn(first, second);
+    TestClock clock = new TestClock();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(new TestScheduler());
+    startVideoSession("first");
+    startVideoSession("second");
+    sendHeartbeat("Video Playback Paused", "second");
+    PlaybackDelegate playing = videoAnalytics.getSession("first").getPlayback();
+    PlaybackDelegate paused = videoAnalytics.getSession("second").getPlayback();
+    clock.advance(5000L);
+
+    videoAnalytics.suspendSessions();
+    clock.advance(60000L);
+
+    Mockito.verify(first).trackPause();
+    Mockito.verify(second, Mockito.times(1)).trackPause();
+    Assert.assertTrue(playing.isPaused());
+    Assert.assertEquals(5.0, playing.getCurrentPlaybackTime(), 0.001);
+
+    videoAnalytics.resumeSessions();
+    clock.advance(1000L);
+
+    Mockito.verify(first).trackPlay();
+    Mockito.verify(second, Mockito.never()).trackPlay();
+    Assert.assertFalse(playing.isPaused());
+    Assert.assertEquals(6.0, playing.getCurrentPlaybackTime(), 0.001);
+    Assert.assertTrue(paused.isPaused());
+  }
+
+  @Test
+  public void playbackStateChangedInBackground() {
+    videoAnalytics.setScheduler(new TestScheduler());
+    startVideoSession();
+    videoAnalytics.suspendSessions();
+    sendHeartbeat("Video Playback Paused");
+
+    videoAnalytics.resumeSessions();
+
+    Mockito.verify(heartbeat, Mockito.never()).trackPlay();
+    Assert.assertTrue(videoAnalytics.getPlayback().isPaused());
+  }
+
+  @Test
+  public void otherEventsInBackgroundKeepPlaybackState() {
+    videoAnalytics.setScheduler(new TestScheduler());
+    startVideoSession();
+    videoAnalytics.suspendSessions();
+    sendHeartbeat("Video Quality Updated");
+    sendHeartbeat("Video Ad Started");
+    sendHeartbeat("Video Ad Completed");
+    sendHeartbeat("Video Content Completed");
+
+    videoAnalytics.resumeSessions();
+
+    Mockito.verify(heartbeat).trackPlay();
+    Assert.assertFalse(videoAnalytics.getPlayback().isPaused());
+  }
+
+  @Test
+  public void playbackResumedInBackground() {
+    TestClock clock = new TestClock();
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(scheduler);
+    videoAnalytics.setSessionTimeout(0);
+    videoAnalytics.setBackgroundPolicy(true, 60000L);
+    startVideoSession();
+    videoAnalytics.suspendSessions();
+    sendHeartbeat("Video Playback Paused");
+
+    // The app plays in background, the background timeout does not apply anymore.
+    sendHeartbeat("Video Playback Resumed");
+    Assert.assertFalse(videoAnalytics.getSession("123").isSuspended());
+    clock.advance(60000L);
+    scheduler.runPendingTasks();
+
+    Mockito.verify(heartbeat, Mockito.never()).trackSessionEnd();
+    Assert.assertTrue(videoAnalytics.isSessionStarted());
+    Assert.assertFalse(scheduler.hasPendingTask());
+
+    videoAnalytics.resumeSessions();
+    Mockito.verify(heartbeat, Mockito.times(1)).trackPlay();
+    Assert.assertFalse(videoAnalytics.getPlayback().isPaused());
+  }
+
+  @Test
+  public void endSessionsAfterLongBackgroundStay() {
+    TestClock clock = new TestClock();
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(scheduler);
+    videoAnalytics.setSessionTimeout(0);
+    videoAnalytics.setBackgroundPolicy(true, 60000L);
+    startVideoSession();
+    Assert.assertFalse(scheduler.hasPendingTask());
+
+    videoAnalytics.suspendSessions();
+    Assert.assertEquals(60000L, scheduler.getDelayMillis());
+    clock.advance(60000L);
+    scheduler.runPendingTask();
+
+    Mockito.verify(heartbeat).trackSessionEnd();
+    Assert.assertFalse(videoAnalytics.isSessionStarted());
+    Assert.assertFalse(scheduler.hasPendingTask());
+  }
+
+  @Test
+  public void endSessionsAfterLongBackgroundStayOnResume() {
+    TestClock clock = new TestClock();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(new TestScheduler());
+    videoAnalytics.setBackgroundPolicy(true, 60000L);
+    startVideoSession();
+
+    videoAnalytics.suspendSessions();
+    // The reaper did not run while the app was in background.
+    clock.advance(120000L);
+    videoAnalytics.resumeSessions();
+
+    Mockito.verify(heartbeat).trackSessionEnd();
+    Mockito.verify(heartbeat, Mockito.never()).trackPlay();
+    Assert.assertFalse(videoAnalytics.isSessionStarted());
+  }
+
+  @Test
+  public void keepPlayingInBackground() {
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setScheduler(scheduler);
+    videoAnalytics.setSessionTimeout(0);
+    videoAnalytics.setBackgroundPolicy(false, 60000L);
+    startVideoSession();
+
+    videoAnalytics.suspendSessions();
+    videoAnalytics.resumeSessions();
+
+    Mockito.verify(heartbeat, Mockito.never()).trackPause();
+    Mockito.verify(heartbeat, Mockito.never()).trackPlay();
+    Assert.assertFalse(videoAnalytics.getPlayback().isPaused());
+    Assert.assertFalse(scheduler.hasPendingTask());
+  }
+
   @Test
   public void trackVideoBufferStarted() {
     startVideoSession();
@@ -520,11 +908,13 @@ public class VideoAnalyticsTest {
   }
 
   @Test
-  public void trackVideoPlaybackInterrupted() throws Exception {
+  public void trackVideoPlaybackInterrupted() {
+    TestClock clock = new TestClock();
+    videoAnalytics.setClock(clock);
     startVideoSession();
     sendHeartbeat("Video Playback Interrupted");
     Double first = videoAnalytics.getPlayback().getCurrentPlaybackTime();
-    Thread.sleep(2000L);
+    clock.advance(2000L);
     Assert.assertEquals(videoAnalytics.getPlayback().getCurrentPlaybackTime(), first, 0.001);
     Mockito.verify(heartbeat).trackPause();
   }
@@ -583,13 +973,162 @@ public class VideoAnalyticsTest {
     Assert.assertTrue(matcher.matches(videoAnalytics.getPlayback().getQosData()));
   }
 
+  @Test
+  public void deriveQosFromEvents() {
+    TestClock clock = new TestClock();
+    videoAnalytics.setClock(clock);
+    startVideoSession();
+    Assert.assertNull(videoAnalytics.getPlayback().getQosData());
+
+    clock.advance(2000L);
+    sendHeartbeat("Video Content Started");
+    sendHeartbeat("Video Playback Buffer Started");
+    clock.advance(500L);
+    sendHeartbeat("Video Playback Buffer Completed");
+    sendSeekHeartbeat("Video Playback Seek Started", null);
+
+    QosAggregator qos = videoAnalytics.getPlayback().getQos();
+    Assert.assertEquals(2.0, (Double) videoAnalytics.getPlayback().getQosData().getValue("startupTime"), 0.001);
+    Assert.assertEquals(1, qos.getBufferCount());
+    Assert.assertEquals(500L, qos.getBufferMillis());
+    Assert.assertEquals(1, qos.getSeekCount());
+  }
+
+  @Test
+  public void coalesceSeekStorm() {
+    TestClock clock = new TestClock();
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(scheduler);
+    videoAnalytics.setSessionTimeout(0);
+    videoAnalytics.setCoalescingWindow(250L);
+    startVideoSession();
+
+    for (long position = 10; position <= 100; position += 10) {
+      sendSeekHeartbeat("Video Playback Seek Started", null);
+      clock.advance(20L);
+      sendSeekHeartbeat("Video Playback Seek Completed", position);
+      clock.advance(20L);
+    }
+
+    Mockito.verify(heartbeat).trackEvent(MediaHeartbeat.Event.SeekStart, null, null);
+    Mockito.verify(heartbeat, Mockito.never()).trackEvent(MediaHeartbeat.Event.SeekComplete, null, null);
+    Assert.assertEquals(100.02, videoAnalytics.getPlayback().getCurrentPlaybackTime(), 0.001);
+
+    clock.advance(230L);
+    scheduler.runPendingTask();
+    Mockito.verify(heartbeat).trackEvent(MediaHeartbeat.Event.SeekStart, null, null);
+    Mockito.verify(heartbeat).trackEvent(MediaHeartbeat.Event.SeekComplete, null, null);
+    Assert.assertFalse(videoAnalytics.getPlayback().isPaused());
+    Assert.assertFalse(scheduler.hasPendingTask());
+  }
+
+  @Test
+  public void flushHeldEventsAfterWindow() {
+    TestClock clock = new TestClock();
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(scheduler);
+    videoAnalytics.setSessionTimeout(0);
+    videoAnalytics.setCoalescingWindow(250L);
+    startVideoSession();
+
+    sendSeekHeartbeat("Video Playback Seek Started", null);
+    clock.advance(200L);
+    sendSeekHeartbeat("Video Playback Seek Completed", 50L);
+    clock.advance(100L);
+    // The window restarts with every held event.
+    scheduler.runPendingTask();
+    Mockito.verify(heartbeat, Mockito.never()).trackEvent(MediaHeartbeat.Event.SeekComplete, null, null);
+    Assert.assertEquals(150L, scheduler.getDelayMillis());
+
+    clock.advance(150L);
+    scheduler.runPendingTask();
+    Mockito.verify(heartbeat).trackEvent(MediaHeartbeat.Event.SeekComplete, null, null);
+  }
+
+  @Test
+  public void dropShortBuffering() {
+    TestClock clock = new TestClock();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(new TestScheduler());
+    videoAnalytics.setCoalescingWindow(250L);
+    startVideoSession();
+    clock.advance(1000L);
+
+    sendHeartbeat("Video Playback Buffer Started");
+    clock.advance(100L);
+    sendHeartbeat("Video Playback Buffer Completed");
+    clock.advance(1000L);
+
+    Mockito.verify(heartbeat, Mockito.never()).trackEvent(Mockito.any(MediaHeartbeat.Event.class), Mockito.any(MediaObject.class), Mockito.<Map<String, String>>any());
+    Assert.assertFalse(videoAnalytics.getPlayback().isPaused());
+    Assert.assertEquals(2.0, videoAnalytics.getPlayback().getCurrentPlaybackTime(), 0.001);
+  }
+
+  @Test
+  public void reportLongBuffering() {
+    TestClock clock = new TestClock();
+    TestScheduler scheduler = new TestScheduler();
+    videoAnalytics.setClock(clock);
+    videoAnalytics.setScheduler(scheduler);
+    videoAnalytics.setSessionTimeout(0);
+    videoAnalytics.setCoalescingWindow(250L);
+    startVideoSession();
+
+    sendHeartbeat("Video Playback Buffer Started");
+    clock.advance(250L);
+    scheduler.runPendingTask();
+    Mockito.verify(heartbeat).trackEvent(MediaHeartbeat.Event.BufferStart, null, null);
+
+    sendHeartbeat("Video Playback Buffer Completed");
+    Mockito.verify(heartbeat).trackEvent(MediaHeartbeat.Event.BufferComplete, null, null);
+  }
+
+  @Test
+  public void heldEventsReportedBeforeOtherEvents() {
+    videoAnalytics.setScheduler(new TestScheduler());
+    videoAnalytics.setCoalescingWindow(250L);
+    startVideoSession();
+
+    sendSeekHeartbeat("Video Playback Seek Started", null);
+    sendSeekHeartbeat("Video Playback Seek Completed", 50L);
+    sendHeartbeat("Video Playback Buffer Started");
+    sendHeartbeat("Video Playback Paused");
+
+    InOrder inOrder = Mockito.inOrder(heartbeat);
+    inOrder.verify(heartbeat).trackEvent(MediaHeartbeat.Event.SeekStart, null, null);
+    inOrder.verify(heartbeat).trackEvent(MediaHeartbeat.Event.SeekComplete, null, null);
+    inOrder.verify(heartbeat).trackEvent(MediaHeartbeat.Event.BufferStart, null, null);
+    inOrder.verify(heartbeat).trackPause();
+  }
+
+  @Test
+  public void heldEventsReportedBeforeSessionEnd() {
+    videoAnalytics.setScheduler(new TestScheduler());
+    videoAnalytics.setCoalescingWindow(250L);
+    startVideoSession("first");
+    sendSeekHeartbeat("Video Playback Seek Started", null);
+    sendSeekHeartbeat("Video Playback Seek Completed", 50L);
+
+    startVideoSession("first");
+
+    InOrder inOrder = Mockito.inOrder(heartbeat);
+    inOrder.verify(heartbeat).trackEvent(MediaHeartbeat.Event.SeekComplete, null, null);
+    inOrder.verify(heartbeat).trackSessionEnd();
+  }
+
   private void startVideoSession() {
+    startVideoSession("123");
+  }
+
+  private void startVideoSession(String sessionId) {
     TrackPayload payload = new TrackPayload.Builder()
             .userId("test-user")
             .event(VideoAnalytics.Event.PlaybackStarted.getName())
             .properties(new Properties()
                     .putValue("title", "You Win or You Die")
-                    .putValue("sessionId", "123")
+                    .putValue("sessionId", sessionId)
                     .putValue("totalLength", 100D)
                     .putValue("assetId", "123")
                     .putValue("program", "Game of Thrones")
@@ -612,6 +1151,15 @@ public class VideoAnalyticsTest {
     videoAnalytics.track(payload);
   }
 
+  private void sendHeartbeat(String eventName, String sessionId) {
+    TrackPayload payload = new TrackPayload.Builder()
+            .userId("test-user")
+            .event(eventName)
+            .properties(new Properties().putValue("session_id", sessionId))
+            .build();
+    videoAnalytics.track(payload);
+  }
+
   private void sendSeekHeartbeat(String eventName, Long seekPosition) {
     TrackPayload payload = new TrackPayload.Builder()
             .userId("test-user")